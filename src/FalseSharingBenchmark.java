@@ -0,0 +1,67 @@
+import concurrentcube.UnsynchronizedCube;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Przepustowość współbieżnych obrotów różnych warstw jednej osi (bez Sync,
+// więc mierzymy tylko koszt współdzielenia pamięci) dla 1, 2, 4, ... wątków.
+// Porównuje liczniki kolorów i hasze w jednym pasie (wszystkie wątki piszą
+// do tych samych linii pamięci) z podziałem na pasy.
+// Skrajne warstwy obracają też ścianki, więc pomiar obejmuje dane ścianek.
+// Argumenty: największa liczba wątków, najmniejszy rozmiar kostki,
+// czas pomiaru w milisekundach.
+public class FalseSharingBenchmark {
+
+    private static volatile long sink;
+
+    private static int argument(String[] args, int index, int fallback) {
+        return args.length > index ? Integer.parseInt(args[index]) : fallback;
+    }
+
+    private static double measure(int stripes, int threads, int size, int millis) throws InterruptedException {
+        UnsynchronizedCube cube = new UnsynchronizedCube(size, stripes);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong done = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // warstwy rozłożone od 0 do size - 1, każdy wątek ma swoją
+            int layer = threads == 1 ? 0 : t * (size - 1) / (threads - 1);
+            workers.add(new Thread(() -> {
+                long rotations = 0;
+                while (!stop.get()) {
+                    cube.rotate(1, layer);
+                    rotations++;
+                }
+                done.addAndGet(rotations);
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+            worker.start();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+        sink = cube.stateHash();
+        return done.get() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = argument(args, 0, 64);
+        int minSize = argument(args, 1, 8);
+        int millis = argument(args, 2, 500);
+        System.out.printf("%d processors%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %6s %20s %20s%n", "threads", "size", "1 stripe rot/s", "striped rot/s");
+        // rozgrzewka
+        measure(1, 2, minSize, millis);
+        measure(maxThreads, 2, minSize, millis);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            int size = Math.max(minSize, threads);
+            System.out.printf("%8d %6d %20.0f %20.0f%n", threads, size,
+                    measure(1, threads, size, millis),
+                    measure(threads, threads, size, millis));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import concurrentcube.Cube;
+import concurrentcube.CubeRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+// Generator obciążenia porównujący wiele kostek Cube obracanych przez
+// blokujące się wątki z tymi samymi kostkami w CubeRegistry.
+// Argumenty: liczba kostek, rozmiar, liczba wątków klientów,
+// liczba obrotów na wątek, liczba pętli w rejestrze.
+public class RegistryBenchmark {
+
+    private static int argument(String[] args, int index, int fallback) {
+        return args.length > index ? Integer.parseInt(args[index]) : fallback;
+    }
+
+    private static double blocking(int cubes, int size, int clients, int rotations) throws InterruptedException {
+        Cube[] all = new Cube[cubes];
+        for (int i = 0; i < cubes; i++)
+            all[i] = new Cube(size, (x, y) -> {}, (x, y) -> {}, () -> {}, () -> {});
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < rotations; i++)
+                        all[random.nextInt(cubes)].rotate(random.nextInt(6), random.nextInt(size));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        return (double) clients * rotations / (System.nanoTime() - start) * 1e9;
+    }
+
+    private static double sharded(int cubes, int size, int clients, int rotations, int shards)
+            throws InterruptedException {
+        CubeRegistry registry = new CubeRegistry(shards);
+        for (int i = 0; i < cubes; i++)
+            registry.create(i, size).join();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            threads.add(new Thread(() -> {
+                CompletableFuture<Void> last = null;
+                for (int i = 0; i < rotations; i++)
+                    last = registry.rotate(random.nextInt(cubes), random.nextInt(6), random.nextInt(size));
+                if (last != null)
+                    last.join();
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        // czekamy, aż pętle wykonają wszystkie zgłoszone obroty
+        registry.close();
+        return (double) clients * rotations / (System.nanoTime() - start) * 1e9;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cubes = argument(args, 0, 1000);
+        int size = argument(args, 1, 3);
+        int clients = argument(args, 2, 64);
+        int rotations = argument(args, 3, 20000);
+        int shards = argument(args, 4, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%d cubes %dx%d, %d clients x %d rotations, %d shards%n",
+                cubes, size, size, clients, rotations, shards);
+        for (int round = 0; round < 3; round++)
+            System.out.printf("round %d: blocking %.0f rotations/s, sharded %.0f rotations/s%n", round,
+                    blocking(cubes, size, clients, rotations),
+                    sharded(cubes, size, clients, rotations, shards));
+    }
+}
@@ -0,0 +1,203 @@
+import concurrentcube.Cube;
+import concurrentcube.UnsynchronizedCube;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+// Jednowątkowy pomiar kosztu pojedynczego obrotu (bez JMH, więc z ręczną
+// rozgrzewką). Dla każdego rozmiaru wypisuje średni czas obrotu dawną
+// metodą (LegacyCube), obrotu samej kostki i obrotu przez Cube (z protokołami
+// Sync), żeby zmiany można było porównywać z punktem wyjścia.
+public class RotationBenchmark {
+
+    private static final int MOVES = 1 << 12;
+
+    private static volatile long sink;
+
+    private static int[][] randomMoves(int size, long seed) {
+        Random random = new Random(seed);
+        int[][] res = new int[MOVES][];
+        for (int i = 0; i < MOVES; i++)
+            res[i] = new int[]{random.nextInt(6), random.nextInt(size)};
+        return res;
+    }
+
+    // Obrót warstwy tak, jak robił to Cube przed MovePlan: naklejki jako
+    // Integer[6][size][size], rządki przenoszone przez exchange, bez Sync,
+    // liczników i haszy. Tylko do porównań.
+    private static final class LegacyCube {
+
+        private final Integer[][][] cube;
+        private final boolean[][] doWeFlip;
+        private final boolean[][] isRotatingHorizontal;
+        private final int size;
+
+        LegacyCube(int size) {
+            this.size = size;
+            cube = new Integer[6][size][size];
+            for (int i = 0; i < 6; i++)
+                for (int j = 0; j < size; j++)
+                    for (int k = 0; k < size; k++)
+                        cube[i][j][k] = i;
+            doWeFlip = new boolean[6][6];
+            isRotatingHorizontal = new boolean[6][6];
+            // wartości wynikające z ponumerowania ścianek kostki
+            for (int side = 0; side < 6; side++) {
+                for (int currentSide = 0; currentSide < 6; currentSide++) {
+                    switch (side) {
+                        case 0:
+                            doWeFlip[side][currentSide] = false;
+                            break;
+                        case 1:
+                            doWeFlip[side][currentSide] = currentSide != 4;
+                            break;
+                        case 3:
+                            doWeFlip[side][currentSide] = currentSide == 4;
+                            break;
+                        case 2:
+                            doWeFlip[side][currentSide] = currentSide != 1 && currentSide != 5;
+                            break;
+                        case 4:
+                            doWeFlip[side][currentSide] = currentSide == 1 || currentSide == 5;
+                            break;
+                        default:
+                            doWeFlip[side][currentSide] = true;
+                    }
+                    isRotatingHorizontal[side][currentSide] =
+                            (sideToAxis(side) == 2) || (sideToAxis(currentSide) == 2 && sideToAxis(side) == 1);
+                }
+            }
+        }
+
+        private static int sideToAxis(int side) {
+            return ((side + 2) % 5) % 3;
+        }
+
+        private static int getOppositeSide(int side) {
+            for (int i = 0; i < 6; i++)
+                if (sideToAxis(i) == sideToAxis(side) && i != side)
+                    return i;
+            return -1;
+        }
+
+        private static int nextSide(int anchorSide, int prevSide) {
+            switch (anchorSide) {
+                case 0:
+                    return prevSide == 1 ? 4 : prevSide - 1;
+                case 1:
+                    return prevSide == 2 ? 5 : prevSide == 5 ? 4 : (prevSide + 2) % 6;
+                case 2:
+                    return prevSide == 0 ? 3 : prevSide == 1 ? 0 : (prevSide + 2) % 6;
+                default:
+                    return getOppositeSide(nextSide(getOppositeSide(anchorSide), prevSide));
+            }
+        }
+
+        void rotateClockwise(int currentSide) {
+            for (int side = 0; side < 6; side++) {
+                doWeFlip[side][currentSide] = doWeFlip[side][currentSide] != isRotatingHorizontal[side][currentSide];
+                isRotatingHorizontal[side][currentSide] = !isRotatingHorizontal[side][currentSide];
+            }
+        }
+
+        private Integer[] col(int number, int side) {
+            return Arrays.stream(cube[side]).map(x -> x[number]).toArray(Integer[]::new);
+        }
+
+        private void setCol(int number, int side, Integer[] col) {
+            IntStream.range(0, size).forEach(x -> cube[side][x][number] = col[x]);
+        }
+
+        private Integer[] exchange(Integer[] to, int side, int currentSide, int layer) {
+            boolean changesLayers = doWeFlip[side][currentSide] == isRotatingHorizontal[side][currentSide];
+            int trueLayer = changesLayers ? size - layer - 1 : layer;
+            Integer[] buffer;
+            if (isRotatingHorizontal[side][currentSide])
+                buffer = cube[currentSide][trueLayer];
+            else
+                buffer = col(trueLayer, currentSide);
+            if (doWeFlip[side][currentSide]) {
+                Collections.reverse(Arrays.asList(buffer));
+                Collections.reverse(Arrays.asList(to));
+            }
+            if (isRotatingHorizontal[side][currentSide])
+                cube[currentSide][trueLayer] = to;
+            else
+                setCol(trueLayer, currentSide, to);
+            return buffer;
+        }
+
+        void rotate(int side, int layer) {
+            int currentSide = side == 5 || side == 0 ? 1 : 0;
+            if (layer == 0)
+                rotateClockwise(side);
+            else if (layer == size - 1)
+                for (int i = 0; i < 3; i++)
+                    rotateClockwise(getOppositeSide(side));
+            Integer[] buffer = new Integer[size];
+            for (int i = 0; i <= 4; i++) {
+                buffer = exchange(buffer, side, currentSide, layer);
+                currentSide = nextSide(side, currentSide);
+            }
+        }
+    }
+
+    private static double measureLegacy(int size, int[][] moves, long rotations) {
+        LegacyCube cube = new LegacyCube(size);
+        long start = System.nanoTime();
+        for (long i = 0; i < rotations; i++) {
+            int[] move = moves[(int) (i % MOVES)];
+            cube.rotate(move[0], move[1]);
+        }
+        long time = System.nanoTime() - start;
+        sink = cube.cube[0][0][0];
+        return (double) time / rotations;
+    }
+
+    private static double measureUnsynchronized(int size, int[][] moves, long rotations) {
+        UnsynchronizedCube cube = new UnsynchronizedCube(size);
+        long start = System.nanoTime();
+        for (long i = 0; i < rotations; i++) {
+            int[] move = moves[(int) (i % MOVES)];
+            cube.rotate(move[0], move[1]);
+        }
+        long time = System.nanoTime() - start;
+        sink = cube.stateHash();
+        return (double) time / rotations;
+    }
+
+    private static double measureCube(int size, int[][] moves, long rotations) throws InterruptedException {
+        Cube cube = new Cube(size, (x, y) -> {}, (x, y) -> {}, () -> {}, () -> {});
+        long start = System.nanoTime();
+        for (long i = 0; i < rotations; i++) {
+            int[] move = moves[(int) (i % MOVES)];
+            cube.rotate(move[0], move[1]);
+        }
+        long time = System.nanoTime() - start;
+        sink = cube.stateHash();
+        return (double) time / rotations;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] sizes = args.length > 0 ? new int[args.length] : new int[]{2, 3, 10, 100, 1000};
+        for (int i = 0; i < args.length; i++)
+            sizes[i] = Integer.parseInt(args[i]);
+        System.out.printf("%8s %16s %22s %16s%n", "size", "LegacyCube ns", "UnsynchronizedCube ns", "Cube ns");
+        for (int size : sizes) {
+            int[][] moves = randomMoves(size, size);
+            // około sekundy na pomiar niezależnie od rozmiaru
+            long rotations = Math.max(1000, 20_000_000L / (size + 10));
+            for (int warmup = 0; warmup < 3; warmup++) {
+                measureLegacy(size, moves, rotations / 4);
+                measureUnsynchronized(size, moves, rotations / 4);
+                measureCube(size, moves, rotations / 4);
+            }
+            System.out.printf("%8d %16.1f %22.1f %16.1f%n", size,
+                    measureLegacy(size, moves, rotations),
+                    measureUnsynchronized(size, moves, rotations),
+                    measureCube(size, moves, rotations));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import concurrentcube.Cube;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Przepustowość kostki, gdy co dziesiąty wątek nie chce długo czekać.
+// Porównuje rezygnację przez rotate z limitem czasu, przez tryRotate
+// i (tak jak dawniej) przez przerwanie wątku po upływie limitu.
+// Argumenty: rozmiar, liczba wątków, limit w mikrosekundach,
+// czas pomiaru w milisekundach.
+public class TimeoutBenchmark {
+
+    private enum Mode { NONE, TIMEOUT, TRY, INTERRUPT }
+
+    private static int argument(String[] args, int index, int fallback) {
+        return args.length > index ? Integer.parseInt(args[index]) : fallback;
+    }
+
+    private static String measure(Mode mode, int size, int threads, int timeoutMicros, int millis)
+            throws InterruptedException {
+        Cube cube = new Cube(size, (x, y) -> {}, (x, y) -> {}, () -> {}, () -> {});
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong done = new AtomicLong(), givenUp = new AtomicLong();
+        List<Thread> workers = new ArrayList<>(), impatient = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            boolean isImpatient = mode != Mode.NONE && t % 10 == 9;
+            Thread worker = new Thread(() -> {
+                long rotations = 0, failures = 0;
+                while (!stop.get()) {
+                    int side = random.nextInt(6), layer = random.nextInt(size);
+                    try {
+                        boolean rotated = true;
+                        if (isImpatient && mode == Mode.TIMEOUT)
+                            rotated = cube.rotate(side, layer, timeoutMicros, TimeUnit.MICROSECONDS);
+                        else if (isImpatient && mode == Mode.TRY)
+                            rotated = cube.tryRotate(side, layer);
+                        else
+                            cube.rotate(side, layer);
+                        if (rotated) {
+                            rotations++;
+                            continue;
+                        }
+                    } catch (InterruptedException e) {
+                        // zgłaszamy je niżej tak samo jak przekroczenie czasu
+                    }
+                    // kto zrezygnował, zajmuje się czymś innym i wraca później
+                    // (bez tego tryRotate w pętli tylko zabiera procesor)
+                    failures++;
+                    LockSupport.parkNanos(timeoutMicros * 1000L);
+                }
+                done.addAndGet(rotations);
+                givenUp.addAndGet(failures);
+            });
+            workers.add(worker);
+            if (isImpatient)
+                impatient.add(worker);
+        }
+        // przy przerwaniach limit czasu odmierza osobny wątek
+        Thread interrupter = new Thread(() -> {
+            while (!stop.get()) {
+                LockSupport.parkNanos(timeoutMicros * 1000L);
+                for (Thread worker : impatient)
+                    worker.interrupt();
+            }
+        });
+
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+            worker.start();
+        if (mode == Mode.INTERRUPT)
+            interrupter.start();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers)
+            worker.join();
+        if (mode == Mode.INTERRUPT)
+            interrupter.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return String.format("%-9s %14.0f %14.0f", mode, done.get() / seconds, givenUp.get() / seconds);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = argument(args, 0, 10);
+        int threads = argument(args, 1, 20);
+        int timeoutMicros = argument(args, 2, 50);
+        int millis = argument(args, 3, 1000);
+        System.out.printf("cube %dx%d, %d threads (%d impatient), timeout %d us%n",
+                size, size, threads, threads / 10, timeoutMicros);
+        System.out.printf("%-9s %14s %14s%n", "mode", "rotations/s", "given up/s");
+        for (int round = 0; round < 3; round++)
+            for (Mode mode : Mode.values())
+                System.out.println(measure(mode, size, threads, timeoutMicros, millis));
+    }
+}
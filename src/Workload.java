@@ -0,0 +1,117 @@
+import concurrentcube.Trace;
+import concurrentcube.TraceReplay;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Generowanie śladów obciążenia i ich odtwarzanie na kostce Cube.
+//   generate <rodzaj> <plik> [rozmiar] [operacje] [ziarno] [skew] [showRatio]
+//       rodzaj: uniform, axis-skewed, hot-layer, show-heavy
+//   replay <plik> [wątki...] [-r powtórzenia]
+//       dla każdej liczby wątków wypisuje przepustowość, percentyle
+//       czasów operacji i hasz stanu końcowego
+//   info <plik>
+public class Workload {
+
+    private static void usage() {
+        System.err.println("usage: Workload generate <uniform|axis-skewed|hot-layer|show-heavy> <file>"
+                + " [size] [operations] [seed] [skew] [showRatio]");
+        System.err.println("       Workload replay <file> [threads...] [-r repeats]");
+        System.err.println("       Workload info <file>");
+        System.exit(2);
+    }
+
+    private static Trace load(String file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return Trace.read(in);
+        }
+    }
+
+    private static void generate(String[] args) throws IOException {
+        if (args.length < 3)
+            usage();
+        Trace.Spec spec = new Trace.Spec();
+        try {
+            spec.kind = Trace.Kind.of(args[1]);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+        if (args.length > 3)
+            spec.size = Integer.parseInt(args[3]);
+        if (args.length > 4)
+            spec.operations = Integer.parseInt(args[4]);
+        if (args.length > 5)
+            spec.seed = Long.parseLong(args[5]);
+        if (args.length > 6)
+            spec.skew = Double.parseDouble(args[6]);
+        if (args.length > 7)
+            spec.showRatio = Double.parseDouble(args[7]);
+        Trace trace = Trace.generate(spec);
+        try (OutputStream out = new FileOutputStream(args[2])) {
+            trace.write(out);
+        }
+        System.out.printf("%s: %s, sequential hash %016x%n", args[2], trace, trace.sequentialHash());
+    }
+
+    private static void replay(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2)
+            usage();
+        Trace trace = load(args[1]);
+        int repeats = 1;
+        int[] threads = new int[args.length];
+        int count = 0;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("-r")) {
+                if (i + 1 == args.length)
+                    usage();
+                repeats = Integer.parseInt(args[++i]);
+            } else
+                threads[count++] = Integer.parseInt(args[i]);
+        }
+        if (count == 0)
+            threads[count++] = Runtime.getRuntime().availableProcessors();
+        System.out.println(trace);
+        for (int i = 0; i < count; i++)
+            for (int r = 0; r < repeats; r++)
+                System.out.println(new TraceReplay(trace).replay(threads[i]));
+    }
+
+    private static void info(String[] args) throws IOException {
+        if (args.length < 2)
+            usage();
+        Trace trace = load(args[1]);
+        int shows = 0;
+        int[] axes = new int[3];
+        for (int i = 0; i < trace.length(); i++) {
+            if (trace.side(i) == Trace.SHOW)
+                shows++;
+            else
+                // numeracja osi taka jak w Cube
+                axes[(trace.side(i) + 2) % 5 % 3]++;
+        }
+        System.out.printf("%s%n%d operations: %d shows, rotations per axis %d %d %d, sequential hash %016x%n",
+                trace, trace.length(), shows, axes[0], axes[1], axes[2], trace.sequentialHash());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0)
+            usage();
+        switch (args[0]) {
+            case "generate":
+                generate(args);
+                break;
+            case "replay":
+                replay(args);
+                break;
+            case "info":
+                info(args);
+                break;
+            default:
+                usage();
+        }
+    }
+}
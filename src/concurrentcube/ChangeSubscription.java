@@ -0,0 +1,84 @@
+package concurrentcube;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Subskrypcja zmian kostki. Obracające wątki wpisują zmiany do ograniczonego
+// bufora cyklicznego bez czekania na subskrybenta - jeśli subskrybent
+// nie nadąży, to starsze zmiany zostają nadpisane, a poll zwraca
+// CubeChange.RESYNC, dopóki subskrybent nie wywoła resync.
+// Z poll i resync może korzystać naraz tylko jeden wątek.
+public class ChangeSubscription {
+
+    private final Cube cube;
+    private final int capacity;
+    private final AtomicReferenceArray<CubeChange> ring;
+    // numer kolejnej zmiany do zapisania (wspólny dla obracających)
+    private final AtomicLong tail = new AtomicLong();
+    // numer kolejnej zmiany do odczytania (tylko dla subskrybenta)
+    private long head;
+    // nowy subskrybent nie zna jeszcze stanu kostki,
+    // więc zaczyna od pobrania migawki
+    private boolean overrun = true;
+
+    ChangeSubscription(Cube cube, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.cube = cube;
+        this.capacity = capacity;
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    // wywoływane przez obracających w sekcji krytycznej, więc
+    // zmiany z różnych osi trafiają do bufora w kolejności obrotów
+    // (a zmiany z tej samej osi są przemienne)
+    void publish(int side, int layer) {
+        long sequence = tail.getAndIncrement();
+        CubeChange change = new CubeChange(sequence, side, layer);
+        // obroty tej samej osi publikują naraz, więc spóźniony wątek może
+        // trafić do miejsca, w którym leży już zmiana z następnego okrążenia -
+        // wtedy jej nie nadpisuje, a subskrybent zobaczy wyższy numer i resync
+        ring.updateAndGet((int) (sequence % capacity),
+                old -> old == null || old.getSequence() < sequence ? change : old);
+    }
+
+    // wywoływane w trakcie show, więc żaden obrót nie jest w toku
+    // i wszystkie zmiany do tail są już w buforze
+    void rewind() {
+        head = tail.get();
+        overrun = false;
+    }
+
+    // zwraca kolejną zmianę, null jeśli jeszcze jej nie ma
+    // lub CubeChange.RESYNC jeśli część zmian przepadła
+    public CubeChange poll() {
+        if (overrun)
+            return CubeChange.RESYNC;
+        CubeChange change = ring.get((int) (head % capacity));
+        if (change == null || change.getSequence() < head) {
+            // w tym miejscu może też leżeć zmiana sprzed okrążenia,
+            // a nowsza jeszcze nie została wpisana
+            if (tail.get() - head > capacity) {
+                overrun = true;
+                return CubeChange.RESYNC;
+            }
+            return null;
+        }
+        if (change.getSequence() > head) {
+            overrun = true;
+            return CubeChange.RESYNC;
+        }
+        head++;
+        return change;
+    }
+
+    // zwraca migawkę stanu kostki (jak show) i ustawia subskrypcję tak,
+    // żeby poll zwracał dokładnie zmiany wykonane po tej migawce
+    public String resync() throws InterruptedException {
+        return cube.show(this);
+    }
+
+    public void cancel() {
+        cube.unsubscribe(this);
+    }
+}
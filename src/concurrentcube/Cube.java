@@ -1,216 +1,167 @@
 package concurrentcube;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
-import java.util.stream.IntStream;
+import java.util.function.IntConsumer;
 
 public class Cube {
 
     private final Sync sync;
     private final BiConsumer<Integer, Integer> beforeRotation, afterRotation;
     private final Runnable beforeShowing, afterShowing;
+    private final List<ChangeSubscription> subscribers = new CopyOnWriteArrayList<>();
 
-    private final Integer[][][] cube;
-    private final int[] rotation;
-    private final boolean[][] doWeFlip;
-    private final boolean[][] isRotatingHorizontal;
+    private final UnsynchronizedCube state;
     private final int size;
 
-    // tutaj minimalna magia, chcemy,
-    // żeby funkcja każdej osi przypisała
-    // własną liczbę od 0 do 2
-    private int sideToAxis(int side) {
-        return ((side + 2) % 5) % 3;
-    }
-
-    // testowane - około tak samo szybkie jak case
-    private int getOppositeSide(int side) {
-        for (int i = 0; i < 6; i++)
-            if (sideToAxis(i) == sideToAxis(side) && i != side)
-                return i;
-        return -1;
-    }
-
-    private int nextSide(int anchorSide, int prevSide) {
-        // wartości wynikające z ponumerowania ścianek kostki
-        switch (anchorSide) {
-            case 0:
-                return prevSide == 1 ? 4 : prevSide - 1;
-            case 1:
-                return prevSide == 2 ? 5 : prevSide == 5 ? 4 : (prevSide + 2) % 6;
-            case 2:
-                return prevSide == 0 ? 3 : prevSide == 1 ? 0 : (prevSide + 2) % 6;
-            default:
-                // obracamy w przeciwną stronę niż gdybyśmy obracali względem przeciwnej ścianki
-                // testowane - jest około tak samo szybkie, jak trzy dodatkowe case'y
-                return getOppositeSide(nextSide(getOppositeSide(anchorSide), prevSide));
-        }
+    public Cube(int size,
+                BiConsumer<Integer, Integer> beforeRotation,
+                BiConsumer<Integer, Integer> afterRotation,
+                Runnable beforeShowing,
+                Runnable afterShowing) {
+        this(size, 1, beforeRotation, afterRotation, beforeShowing, afterShowing);
     }
 
+    // Kostka z licznikami kolorów i haszami podzielonymi na stripes pasów
+    // (patrz UnsynchronizedCube), żeby obroty różnych warstw jednej osi nie
+    // pisały do tej samej linii pamięci. Odczyt liczników sumuje pasy, a zysk
+    // jest tylko przy wielu wątkach na wielu procesorach (FalseSharingBenchmark),
+    // więc domyślnie kostka ma jeden pas.
     public Cube(int size,
+                int stripes,
                 BiConsumer<Integer, Integer> beforeRotation,
                 BiConsumer<Integer, Integer> afterRotation,
                 Runnable beforeShowing,
                 Runnable afterShowing) {
+        this(new UnsynchronizedCube(size, stripes), beforeRotation, afterRotation, beforeShowing, afterShowing);
+    }
+
+    // kostka zaczynająca od podanego stanu (który przejmuje na własność)
+    Cube(UnsynchronizedCube state,
+         BiConsumer<Integer, Integer> beforeRotation,
+         BiConsumer<Integer, Integer> afterRotation,
+         Runnable beforeShowing,
+         Runnable afterShowing) {
+        this.size = state.getSize();
         sync = new Sync(size);
-        cube = new Integer[6][size][size];
-        for (int i = 0; i < 6; i++)
-            for (int j = 0; j < size; j++)
-                for (int k = 0; k < size; k++)
-                    cube[i][j][k] = i;
-        this.size = size;
+        this.state = state;
         this.beforeShowing = beforeShowing;
         this.beforeRotation = beforeRotation;
         this.afterShowing = afterShowing;
         this.afterRotation = afterRotation;
-        this.rotation = new int[6];
-        this.doWeFlip = new boolean[6][6];
-        this.isRotatingHorizontal = new boolean[6][6];
-        // wartości wynikające z ponumerowania ścianek kostki
-        for (int side = 0; side < 6; side++) {
-            for (int currentSide = 0; currentSide < 6; currentSide++) {
-                switch (side) {
-                    case 0:
-                        this.doWeFlip[side][currentSide] = false;
-                        break;
-                    case 1:
-                        this.doWeFlip[side][currentSide] = currentSide != 4;
-                        break;
-                    case 3:
-                        this.doWeFlip[side][currentSide] = currentSide == 4;
-                        break;
-                    case 2:
-                        this.doWeFlip[side][currentSide] = currentSide != 1 &&
-                            currentSide != 5;
-                        break;
-                    case 4:
-                        this.doWeFlip[side][currentSide] = currentSide == 1 ||
-                            currentSide == 5;
-                        break;
-                    default:
-                        this.doWeFlip[side][currentSide] = true;
-                }
-                this.isRotatingHorizontal[side][currentSide] =
-                        (sideToAxis(side) == 2) || (sideToAxis(currentSide) == 2 && sideToAxis(side) == 1);
-            }
-        }
+    }
+
+    // patrz Sync.setProbe
+    void setWaitProbe(IntConsumer probe) {
+        sync.setProbe(probe);
+    }
+
+    String describeSync() {
+        return sync.toString();
+    }
+
+    public int getSize() {
+        return size;
     }
 
     public void rotateClockwise(int currentSide) {
-        for (int side = 0; side < 6; side++) {
-            // jeśli mieliśmy poziomy rządek, to obrócenie kostki o 90 stopni zmienia to, czy powinniśmy
-            // go odwrócić (i vice versa)
-            doWeFlip[side][currentSide] = doWeFlip[side][currentSide] != isRotatingHorizontal[side][currentSide];
-            // obrócenie ścianki o 90 stopni zmienia poziom na pion
-            isRotatingHorizontal[side][currentSide] = !isRotatingHorizontal[side][currentSide];
-        }
-        // tablica ułatwiająca wypisywanie
-        rotation[currentSide] = (rotation[currentSide] + 1) % 4;
+        state.rotateClockwise(currentSide);
     }
 
     public void rotateCounterclockwise(int side) {
-        rotateClockwise(side);
-        rotateClockwise(side);
-        rotateClockwise(side);
+        state.rotateCounterclockwise(side);
     }
 
-    private Integer[] col(int number, int side) {
-        return Arrays.stream(cube[side]).map(x -> x[number]).toArray(Integer[]::new);
+    // potrzebujemy uniwersalny numer warstwy do synchronizacji
+    private int syncLayer(int side, int layer) {
+        return side < UnsynchronizedCube.getOppositeSide(side) ? layer : size - layer - 1;
     }
 
-    private void setCol(int number, int side, Integer[] col) {
-        IntStream.range(0, size).forEach(x -> cube[side][x][number] = col[x]);
+    public void rotate(int side, int layer) throws InterruptedException {
+        sync.start(UnsynchronizedCube.sideToAxis(side), syncLayer(side, layer));
+        rotateInside(side, layer);
     }
 
-    // w przypadku poziomym: jeśli mamy do czynienia z kostką, którą musimy, odbić,
-    // to musimy odbić także numer warstwy (w przypadku pionowym odwrotnie)
-    boolean doWeChangeLayers(int side, int currentSide) {
-        return doWeFlip[side][currentSide] == isRotatingHorizontal[side][currentSide];
+    // Obraca tylko wtedy, gdy nie trzeba czekać na inne operacje: obroty innej
+    // osi (także czekające), show ani obrót tej samej warstwy. Krótkie sekcje
+    // krytyczne protokołów w Sync przeczekuje, więc nie zawodzi bez powodu.
+    // W przeciwieństwie do przerwania czekającego obrotu rezygnacja nic nie
+    // kosztuje, bo nie zapisujemy się do kolejki w Sync.
+    public boolean tryRotate(int side, int layer) {
+        if (!sync.tryStart(UnsynchronizedCube.sideToAxis(side), syncLayer(side, layer)))
+            return false;
+        rotateInside(side, layer);
+        return true;
     }
 
-    // zamienia rządek z kostki na rządek w buforze (i zwraca rządek z kostki)
-    private Integer[] exchange(Integer[] to, int side, int currentSide, int layer) {
-        int trueLayer = doWeChangeLayers(side, currentSide) ? size - layer - 1 : layer;
-        Integer[] buffer;
-        if (isRotatingHorizontal[side][currentSide])
-            buffer = cube[currentSide][trueLayer];
-        else
-            buffer = col(trueLayer, currentSide);
+    // zwraca false, jeśli obrót nie zaczął się przed upływem timeout
+    public boolean rotate(int side, int layer, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!sync.start(UnsynchronizedCube.sideToAxis(side), syncLayer(side, layer),
+                Math.max(0, unit.toNanos(timeout))))
+            return false;
+        rotateInside(side, layer);
+        return true;
+    }
 
-        if (doWeFlip[side][currentSide]) {
-            Collections.reverse(Arrays.asList(buffer));
-            Collections.reverse(Arrays.asList(to));
-        }
-        if (isRotatingHorizontal[side][currentSide])
-            cube[currentSide][trueLayer] = to;
-        else
-            setCol(trueLayer, currentSide, to);
-        return buffer;
+    // wywoływane po wejściu do sekcji krytycznej
+    private void rotateInside(int side, int layer) {
+        int axis = UnsynchronizedCube.sideToAxis(side);
+        int syncLayer = syncLayer(side, layer);
+        beforeRotation.accept(side, layer);
+
+        state.rotate(side, layer);
+
+        afterRotation.accept(side, layer);
+        for (ChangeSubscription subscriber : subscribers)
+            subscriber.publish(side, layer);
+        sync.end(axis, syncLayer);
     }
 
-    private void rotateFace(int side, int layer) {
-        if (layer == 0)
-            rotateClockwise(side);
-        else if (layer == size - 1)
-            rotateCounterclockwise(getOppositeSide(side));
+    // Poniższe nie wchodzą do sekcji krytycznej, więc wynik jest
+    // dokładny tylko wtedy, gdy żaden obrót nie jest w toku.
+    public int[] faceColorCounts(int face) {
+        return state.faceColorCounts(face);
     }
 
-    public void rotate(int side, int layer) throws InterruptedException {
-        // potrzebujemy uniwersalny numer warstwy do synchronizacji
-        int syncLayer = side < getOppositeSide(side) ? layer : size - layer - 1;
+    public boolean isFaceUniform(int face) {
+        return state.isFaceUniform(face);
+    }
 
-        sync.start(sideToAxis(side), syncLayer);
-        beforeRotation.accept(side, layer);
+    public boolean isSolved() {
+        return state.isSolved();
+    }
 
-        int currentSide = side == 5 || side == 0 ? 1 : 0;
-        // rotacja ścianki przyczepionej do warstwy, o ile taka istnieje
-        rotateFace(side, layer);
+    public long stateHash() {
+        return state.stateHash();
+    }
 
-        // rotacja warstwy
-        Integer[] buffer = new Integer[size];
-        // pierwsze przejście pętli tylko zabierze kosteczki, a ostatnie tylko je dostarczy
-        for (int i = 0; i <= 4; i++) {
-            buffer = exchange(buffer, side, currentSide, layer);
-            currentSide = nextSide(side, currentSide);
-        }
+    public ChangeSubscription subscribe(int capacity) {
+        ChangeSubscription subscription = new ChangeSubscription(this, capacity);
+        subscribers.add(subscription);
+        return subscription;
+    }
 
-        afterRotation.accept(side, layer);
-        sync.end(sideToAxis(side), syncLayer);
+    void unsubscribe(ChangeSubscription subscription) {
+        subscribers.remove(subscription);
     }
 
     public String show() throws InterruptedException {
-        StringBuilder res = new StringBuilder();
+        return show(null);
+    }
+
+    // jeśli resyncing nie jest nullem, to w trakcie wypisywania
+    // ustawiamy subskrypcję na stan odpowiadający zwracanej migawce
+    String show(ChangeSubscription resyncing) throws InterruptedException {
         sync.startShow();
         beforeShowing.run();
-        for (int i = 0; i < 6; i++) {
-            switch (rotation[i]) {
-                case 0:
-                    for (int j = 0; j < size; j++)
-                        for (int k = 0; k < size; k++)
-                            res.append(cube[i][j][k]);
-                    break;
-                case 1:
-                    for (int k = 0; k < size; k++)
-                        for (int j = size - 1; j >= 0; j--)
-                            res.append(cube[i][j][k]);
-                    break;
-                case 2:
-                    for (int j = size - 1; j >= 0; j--)
-                        for (int k = size - 1; k >= 0; k--)
-                            res.append(cube[i][j][k]);
-                    break;
-                case 3:
-                    for (int k = size - 1; k >= 0; k--)
-                        for (int j = 0; j < size; j++)
-                            res.append(cube[i][j][k]);
-                    break;
-            }
-        }
+        if (resyncing != null)
+            resyncing.rewind();
+        String res = state.show();
         afterShowing.run();
         sync.endShow();
-        return res.toString();
+        return res;
     }
 
 }
-
@@ -0,0 +1,41 @@
+package concurrentcube;
+
+// Pojedyncza zmiana stanu kostki publikowana subskrybentom:
+// obrót warstwy layer względem ścianki side.
+public class CubeChange {
+
+    // znacznik mówiący subskrybentowi, że nie nadążył
+    // i musi odtworzyć stan z migawki (ChangeSubscription.resync)
+    static final CubeChange RESYNC = new CubeChange(-1, -1, -1);
+
+    private final long sequence;
+    private final int side;
+    private final int layer;
+
+    CubeChange(long sequence, int side, int layer) {
+        this.sequence = sequence;
+        this.side = side;
+        this.layer = layer;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getSide() {
+        return side;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    public boolean isResync() {
+        return this == RESYNC;
+    }
+
+    @Override
+    public String toString() {
+        return isResync() ? "RESYNC" : "#" + sequence + " (" + side + ", " + layer + ")";
+    }
+}
@@ -0,0 +1,126 @@
+package concurrentcube;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Wiele niezależnych kostek rozłożonych na stałą liczbę jednowątkowych pętli
+// zdarzeń. Każda kostka należy do jednej pętli i tylko jej wątek ją czyta
+// i zmienia, więc zamiast Sync wystarcza kolejność zadań w kolejce pętli:
+// obroty i show jednej kostki wykonują się w kolejności zgłoszenia.
+public class CubeRegistry implements AutoCloseable {
+
+    private static class Shard {
+        private final ExecutorService loop;
+        // dostępne tylko z wątku pętli
+        private final Map<Long, UnsynchronizedCube> cubes = new HashMap<>();
+
+        Shard(int number) {
+            loop = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "cube-shard-" + number);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private final Shard[] shards;
+
+    public CubeRegistry(int shardCount) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new Shard(i);
+    }
+
+    public CubeRegistry() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    private Shard shardOf(long id) {
+        // mieszamy bity, żeby kolejne numery kostek nie trafiały do pętli po kolei
+        long z = id * 0x9E3779B97F4A7C15L;
+        return shards[(int) Math.floorMod(z ^ (z >>> 32), (long) shards.length)];
+    }
+
+    private <T> CompletableFuture<T> submit(long id, Function<UnsynchronizedCube, T> action) {
+        Shard shard = shardOf(id);
+        return CompletableFuture.supplyAsync(() -> {
+            UnsynchronizedCube cube = shard.cubes.get(id);
+            if (cube == null)
+                throw new IllegalArgumentException("no cube with id " + id);
+            return action.apply(cube);
+        }, shard.loop);
+    }
+
+    public CompletableFuture<Void> create(long id, int size) {
+        return create(id, new UnsynchronizedCube(size));
+    }
+
+    public CompletableFuture<Void> create(long id, PackedCubeState state) {
+        return create(id, state.toUnsynchronizedCube());
+    }
+
+    private CompletableFuture<Void> create(long id, UnsynchronizedCube cube) {
+        Shard shard = shardOf(id);
+        return CompletableFuture.runAsync(() -> {
+            if (shard.cubes.putIfAbsent(id, cube) != null)
+                throw new IllegalArgumentException("cube with id " + id + " already exists");
+        }, shard.loop);
+    }
+
+    public CompletableFuture<Void> remove(long id) {
+        Shard shard = shardOf(id);
+        return CompletableFuture.runAsync(() -> {
+            if (shard.cubes.remove(id) == null)
+                throw new IllegalArgumentException("no cube with id " + id);
+        }, shard.loop);
+    }
+
+    public CompletableFuture<Void> rotate(long id, int side, int layer) {
+        return submit(id, cube -> {
+            cube.rotate(side, layer);
+            return null;
+        });
+    }
+
+    // wiele obrotów jednej kostki jako jedno zadanie pętli
+    public CompletableFuture<Void> rotateAll(long id, int[][] moves) {
+        return submit(id, cube -> {
+            for (int[] move : moves)
+                cube.rotate(move[0], move[1]);
+            return null;
+        });
+    }
+
+    public CompletableFuture<String> show(long id) {
+        return submit(id, UnsynchronizedCube::show);
+    }
+
+    public CompletableFuture<PackedCubeState> snapshot(long id) {
+        return submit(id, PackedCubeState::of);
+    }
+
+    public CompletableFuture<Long> stateHash(long id) {
+        return submit(id, UnsynchronizedCube::stateHash);
+    }
+
+    // kończy pętle po wykonaniu wszystkich zgłoszonych już zadań;
+    // przerwany przestaje na nie czekać i zostawia flagę przerwania
+    @Override
+    public void close() {
+        for (Shard shard : shards)
+            shard.loop.shutdown();
+        try {
+            for (Shard shard : shards)
+                shard.loop.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,9 +5,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 class CubeTest {
@@ -341,6 +346,54 @@ class CubeTest {
         s.release(2);
     }
 
+    // obroty z limitem czasu i tryRotate nie czekają dłużej, niż trzeba,
+    // a po rezygnacji nie zostawiają śladu w Sync
+    @Test
+    void timeoutTest() throws InterruptedException {
+        Semaphore s = new Semaphore(0);
+        CountDownLatch inside = new CountDownLatch(1);
+        Cube c = new Cube(3, (x, y) -> {
+            if (x == 0 && y == 0) {
+                inside.countDown();
+                s.acquireUninterruptibly();
+            }
+        }, (x, y) -> {}, () -> {}, () -> {});
+        UnsynchronizedCube expected = new UnsynchronizedCube(3);
+        Thread t1 = new Thread(new Mover(0, 0, c));
+        t1.start();
+        inside.await();
+        expected.rotate(0, 0);
+
+        // inna oś albo zajęta warstwa
+        assert !c.tryRotate(1, 0);
+        assert !c.tryRotate(5, 2);
+        // ta sama oś, inna warstwa
+        assert c.tryRotate(5, 0);
+        expected.rotate(5, 0);
+
+        long start = System.nanoTime();
+        assert !c.rotate(1, 0, 50, TimeUnit.MILLISECONDS);
+        assert System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50);
+
+        // reprezentant osi 0 czeka, a członek jego grupy rezygnuje
+        Thread t2 = new Thread(new Mover(1, 1, c));
+        t2.start();
+        while (t2.getState() != Thread.State.WAITING)
+            Thread.yield();
+        expected.rotate(1, 1);
+        assert !c.rotate(3, 2, 20, TimeUnit.MILLISECONDS);
+        assert !c.rotate(4, 1, 0, TimeUnit.MILLISECONDS);
+
+        s.release();
+        t1.join();
+        t2.join();
+        assert c.rotate(3, 2, 1, TimeUnit.SECONDS);
+        expected.rotate(3, 2);
+        assert c.tryRotate(4, 1);
+        expected.rotate(4, 1);
+        assert Objects.equals(c.show(), expected.show());
+    }
+
     // testuje złożność czasową obracania skrajnej ścianki (działa w kilka sekund, jeśli jest O(n))
     @Test
     void performanceTest() {
@@ -351,4 +404,418 @@ class CubeTest {
         }
     }
 
-}
\ No newline at end of file
+    // Obroty różnych warstw jednej osi nigdy nie muszą na siebie czekać, więc
+    // tryRotate się udaje, nawet gdy inny wątek jest akurat w protokole Sync.
+    @Test
+    void tryRotateSameAxisTest() throws InterruptedException {
+        int threads = 8;
+        Cube c = new Cube(threads,(x,y)->{},(x,y)->{},()->{},()->{});
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int layer = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++)
+                    if (!c.tryRotate(i % 2 == 0 ? 1 : 3, i % 2 == 0 ? layer : threads - 1 - layer))
+                        failures.incrementAndGet();
+            });
+        }
+        for (Thread worker : workers)
+            worker.start();
+        for (Thread worker : workers)
+            worker.join();
+        assert failures.get() == 0 : failures.get();
+        assert c.isSolved();
+    }
+
+    // sprawdza, czy subskrybent dostaje kolejne obroty,
+    // a po przepełnieniu bufora sygnał do odtworzenia stanu
+    @Test
+    void changeStreamTest() {
+        Cube c = new Cube(3,(x,y)->{},(x,y)->{},()->{},()->{});
+        ChangeSubscription sub = c.subscribe(4);
+        try {
+            assert sub.poll().isResync();
+            assert Objects.equals(sub.resync(), c.show());
+            assert sub.poll() == null;
+            c.rotate(2, 0);
+            c.rotate(5, 1);
+            CubeChange first = sub.poll(), second = sub.poll();
+            assert first.getSide() == 2 && first.getLayer() == 0;
+            assert second.getSide() == 5 && second.getLayer() == 1;
+            assert sub.poll() == null;
+            for (int i = 0; i < 5; i++)
+                c.rotate(1, 2);
+            assert sub.poll().isResync();
+            assert sub.poll().isResync();
+            String s = sub.resync();
+            assert Objects.equals(s, c.show());
+            assert sub.poll() == null;
+            c.rotate(0, 1);
+            CubeChange third = sub.poll();
+            assert third.getSide() == 0 && third.getLayer() == 1;
+            sub.cancel();
+            c.rotate(0, 1);
+            assert sub.poll() == null;
+        } catch (InterruptedException e) {
+            assert false;
+        }
+    }
+
+    // obroty różnych warstw jednej osi publikują zmiany naraz; subskrybent
+    // musi dostać wszystkie po kolei albo sygnał do odtworzenia stanu
+    @Test
+    void changeStreamSameAxisTest() throws InterruptedException {
+        int size = 64, capacity = 4;
+        Cube c = new Cube(size,(x,y)->{},(x,y)->{},()->{},()->{});
+        ChangeSubscription sub = c.subscribe(capacity);
+        Random random = new Random(13);
+        for (int round = 0; round < 1000; round++) {
+            sub.resync();
+            // najciekawiej jest tuż ponad pojemnością bufora: jeśli pierwsza
+            // zmiana trafi do bufora po ostatniej, to nie ma innego śladu straty
+            int threads = 2 + random.nextInt(capacity + 1);
+            Thread[] movers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                movers[t] = new Thread(new Mover(1, t, c));
+                movers[t].start();
+            }
+            for (Thread mover : movers)
+                mover.join();
+            int total = threads, received = 0;
+            long previous = -1;
+            CubeChange change;
+            while ((change = sub.poll()) != null && !change.isResync()) {
+                assert previous == -1 || change.getSequence() == previous + 1;
+                assert change.getSide() == 1;
+                previous = change.getSequence();
+                received++;
+            }
+            // bez resync żadna zmiana nie może przepaść
+            assert change != null || received == total : received + " of " + total;
+            assert total > capacity || received == total;
+        }
+        sub.cancel();
+    }
+
+    // sprawdza liczniki kolorów na ściankach z wynikiem show
+    @Test
+    void colorCountsTest() {
+        Cube c = new Cube(4,(x,y)->{},(x,y)->{},()->{},()->{});
+        Random random = new Random(42);
+        try {
+            assert c.isSolved();
+            for (int i = 0; i < 200; i++) {
+                c.rotate(random.nextInt(6), random.nextInt(4));
+                String s = c.show();
+                boolean solved = true;
+                for (int face = 0; face < 6; face++) {
+                    int[] expected = new int[6];
+                    for (int j = 0; j < 16; j++)
+                        expected[s.charAt(16 * face + j) - '0']++;
+                    assert Arrays.equals(expected, c.faceColorCounts(face));
+                    boolean uniform = Arrays.stream(expected).anyMatch(x -> x == 16);
+                    assert uniform == c.isFaceUniform(face);
+                    solved &= uniform;
+                }
+                assert solved == c.isSolved();
+            }
+            Cube d = new Cube(3,(x,y)->{},(x,y)->{},()->{},()->{});
+            d.rotate(1, 0);
+            assert !d.isSolved() && d.isFaceUniform(1) && d.isFaceUniform(3) && !d.isFaceUniform(0);
+            d.rotate(3, 2);
+            assert d.isSolved();
+        } catch (InterruptedException e) {
+            assert false;
+        }
+    }
+
+    // sprawdza, czy hasz stanu zgadza się z wynikiem show - na kostce 2x2
+    // losowe obroty często wracają do tych samych stanów
+    @Test
+    void stateHashTest() {
+        Cube c = new Cube(2,(x,y)->{},(x,y)->{},()->{},()->{});
+        Map<String, Long> hashes = new HashMap<>();
+        Map<Long, String> states = new HashMap<>();
+        Random random = new Random(7);
+        try {
+            assert c.stateHash() == 0;
+            for (int i = 0; i < 20000; i++) {
+                c.rotate(random.nextInt(3), 0);
+                String s = c.show();
+                long hash = c.stateHash();
+                assert hashes.getOrDefault(s, hash) == hash;
+                assert Objects.equals(states.getOrDefault(hash, s), s);
+                hashes.put(s, hash);
+                states.put(hash, s);
+            }
+            assert hashes.size() < 20000;
+            Cube d = new Cube(3,(x,y)->{},(x,y)->{},()->{},()->{});
+            d.rotate(1, 0);
+            d.rotate(1, 1);
+            d.rotate(1, 2);
+            Cube f = new Cube(3,(x,y)->{},(x,y)->{},()->{},()->{});
+            for (int i = 0; i < 3; i++)
+                for (int layer = 0; layer < 3; layer++)
+                    f.rotate(3, layer);
+            assert Objects.equals(d.show(), f.show()) && d.stateHash() == f.stateHash();
+        } catch (InterruptedException e) {
+            assert false;
+        }
+    }
+
+    // każda naklejka w każdym kolorze zmienia hasz i różne kolory
+    // na tej samej pozycji dają różne hasze
+    @Test
+    void positionKeysTest() {
+        for (int size = 1; size <= 3; size++) {
+            char[] solved = new UnsynchronizedCube(size).show().toCharArray();
+            for (int position = 0; position < solved.length; position++) {
+                Set<Long> hashes = new HashSet<>();
+                for (int color = 0; color < 6; color++) {
+                    char[] shown = solved.clone();
+                    shown[position] = (char) ('0' + color);
+                    long hash = new UnsynchronizedCube(size, new String(shown)).stateHash();
+                    assert (hash == 0) == (shown[position] == solved[position]) : size + " " + position;
+                    hashes.add(hash);
+                }
+                assert hashes.size() == 6 : size + " " + position;
+            }
+        }
+    }
+
+    // liczniki i hasz rozłożone na pasy dają to samo co bez podziału
+    @Test
+    void stripedCountersTest() {
+        UnsynchronizedCube striped = new UnsynchronizedCube(5, 3);
+        UnsynchronizedCube single = new UnsynchronizedCube(5);
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            int side = random.nextInt(6), layer = random.nextInt(5);
+            striped.rotate(side, layer);
+            single.rotate(side, layer);
+            assert striped.stateHash() == single.stateHash();
+            assert striped.isSolved() == single.isSolved();
+            for (int face = 0; face < 6; face++)
+                assert Arrays.equals(striped.faceColorCounts(face), single.faceColorCounts(face));
+        }
+        UnsynchronizedCube copy = new UnsynchronizedCube(striped);
+        assert copy.stateHash() == single.stateHash() && Objects.equals(copy.show(), single.show());
+        // pasy w Cube trzeba zamówić jawnie
+        Cube cube = new Cube(5, 3,(x,y)->{},(x,y)->{},()->{},()->{});
+        try {
+            cube.rotate(1, 2);
+            single = new UnsynchronizedCube(5);
+            single.rotate(1, 2);
+            assert cube.stateHash() == single.stateHash() && Objects.equals(cube.show(), single.show());
+        } catch (InterruptedException e) {
+            assert false;
+        }
+    }
+
+    // Liczniki pakowane na różne sposoby (do 22, do 1023 i większe kostki)
+    // zgadzają się z show, a hasz - z haszem kostki odtworzonej z show; od 105
+    // hasz nie jest utrzymywany przy obrotach, tylko liczony w stateHash.
+    @Test
+    void packedCountersTest() {
+        Random random = new Random(19);
+        for (int size : new int[]{22, 23, 104, 105, 1024}) {
+            UnsynchronizedCube cube = new UnsynchronizedCube(size, 2);
+            int rotations = size < 1000 ? 300 : 4;
+            for (int i = 0; i < rotations; i++)
+                cube.rotate(random.nextInt(6), random.nextInt(3) == 0 ? 0 : random.nextInt(size));
+            String s = cube.show();
+            for (int face = 0; face < 6; face++) {
+                int[] expected = new int[6];
+                for (int j = 0; j < size * size; j++)
+                    expected[s.charAt(size * size * face + j) - '0']++;
+                assert Arrays.equals(expected, cube.faceColorCounts(face)) : size + " " + face;
+            }
+            assert cube.stateHash() == new UnsynchronizedCube(size, s).stateHash() : size;
+            assert cube.stateHash() != 0 && new UnsynchronizedCube(size).stateHash() == 0 : size;
+        }
+    }
+
+    // liczby stanów kostki 2x2 na kolejnych głębokościach (w obrotach o 90 stopni)
+    // są znane, więc sprawdzamy z nimi przeszukiwanie wszerz
+    @Test
+    void exploreTest() {
+        List<Long> counts = new Search().explore(new UnsynchronizedCube(2), Search.movesFixingCorner(2), 5);
+        assert Objects.equals(counts, Arrays.asList(1L, 6L, 27L, 120L, 534L, 2256L)) : counts;
+    }
+
+    @Test
+    void solveTest() {
+        Random random = new Random(3);
+        Search search = new Search();
+        for (int size = 2; size <= 3; size++) {
+            List<int[]> moves = size == 2 ? Search.movesFixingCorner(size) : Search.allMoves(size);
+            UnsynchronizedCube cube = new UnsynchronizedCube(size);
+            for (int i = 0; i < 4; i++) {
+                int[] move = moves.get(random.nextInt(moves.size()));
+                cube.rotate(move[0], move[1]);
+            }
+            List<int[]> solution = search.solve(cube, moves, 4);
+            assert solution != null && solution.size() <= 4;
+            for (int[] move : solution)
+                cube.rotate(move[0], move[1]);
+            assert cube.isSolved();
+        }
+        assert search.solve(new UnsynchronizedCube(3), Search.allMoves(3), 1).isEmpty();
+    }
+
+    // sprawdza spakowany stan z obrotami na kostce
+    @Test
+    void packedStateTest() {
+        Random random = new Random(11);
+        try {
+            for (int size = 1; size <= 5; size++) {
+                Cube cube = new Cube(size,(x,y)->{},(x,y)->{},()->{},()->{});
+                PackedCubeState state = PackedCubeState.solved(size);
+                assert state.isSolved() && Objects.equals(state, PackedCubeState.of(cube));
+                for (int i = 0; i < 100; i++) {
+                    int side = random.nextInt(6), layer = random.nextInt(size);
+                    cube.rotate(side, layer);
+                    state = state.apply(side, layer);
+                    assert Objects.equals(state.toString(), cube.show());
+                    assert state.isSolved() == cube.isSolved();
+                }
+                assert Objects.equals(state, PackedCubeState.of(cube));
+                Cube copy = state.toCube((x,y)->{},(x,y)->{},()->{},()->{});
+                assert Objects.equals(copy.show(), cube.show()) && copy.stateHash() == cube.stateHash();
+            }
+            // duża kostka: obrót nie wymaga tablic przesunięć dla całego rozmiaru
+            UnsynchronizedCube big = new UnsynchronizedCube(200);
+            PackedCubeState state = PackedCubeState.solved(200);
+            for (int i = 0; i < 20; i++) {
+                int side = random.nextInt(6), layer = i % 2 == 0 ? random.nextInt(200) : 199 * random.nextInt(2);
+                big.rotate(side, layer);
+                state = state.apply(side, layer);
+            }
+            assert Objects.equals(state.toString(), big.show());
+            // kostkę 2x2 zapisujemy po rogach, więc naklejki muszą je tworzyć
+            boolean failed = false;
+            try {
+                PackedCubeState.fromShown(2, "1" + PackedCubeState.solved(2).toString().substring(1));
+            } catch (IllegalArgumentException e) {
+                failed = true;
+            }
+            assert failed;
+        } catch (InterruptedException e) {
+            assert false;
+        }
+    }
+
+    // sprawdza, czy rejestr obraca kostki w kolejności zgłoszenia
+    @Test
+    void registryTest() {
+        Random random = new Random(5);
+        try (CubeRegistry registry = new CubeRegistry(3)) {
+            UnsynchronizedCube[] expected = new UnsynchronizedCube[10];
+            for (int id = 0; id < 10; id++) {
+                expected[id] = new UnsynchronizedCube(3);
+                registry.create(id, 3);
+            }
+            for (int i = 0; i < 1000; i++) {
+                int id = random.nextInt(10), side = random.nextInt(6), layer = random.nextInt(3);
+                expected[id].rotate(side, layer);
+                registry.rotate(id, side, layer);
+            }
+            for (int id = 0; id < 10; id++) {
+                assert Objects.equals(registry.show(id).join(), expected[id].show());
+                assert Objects.equals(registry.snapshot(id).join(), PackedCubeState.of(expected[id]));
+                assert registry.stateHash(id).join() == expected[id].stateHash();
+            }
+            boolean failed = false;
+            try {
+                registry.rotate(10, 0, 0).join();
+            } catch (CompletionException e) {
+                failed = e.getCause() instanceof IllegalArgumentException;
+            }
+            assert failed;
+        }
+    }
+
+    @Test
+    void stressHarnessTest() throws InterruptedException {
+        for (long seed = 1; seed <= 3; seed++) {
+            StressHarness.Config config = new StressHarness.Config();
+            config.operationsPerThread = 500;
+            config.seed = seed;
+            config.timedRatio = 0.1;
+            config.timeoutMicros = seed == 1 ? 0 : 50;
+            StressHarness.Report report = new StressHarness(config).run();
+            assert report.isCorrect() : report;
+            assert report.completed + report.interrupted + report.timedOut
+                    == config.threads * config.operationsPerThread;
+        }
+    }
+
+    // ślad po zapisie i odczycie jest taki sam, a odtworzony jednym
+    // wątkiem daje ten sam stan co wykonanie po kolei
+    @Test
+    void traceTest() throws IOException, InterruptedException {
+        for (Trace.Kind kind : Trace.Kind.values()) {
+            Trace.Spec spec = new Trace.Spec();
+            spec.kind = kind;
+            spec.size = 20;
+            spec.operations = 2000;
+            Trace trace = Trace.generate(spec);
+            assert trace.equals(Trace.generate(spec));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            trace.write(out);
+            Trace read = Trace.read(new ByteArrayInputStream(out.toByteArray()));
+            assert read.equals(trace) && Objects.equals(read.getDescription(), trace.getDescription());
+
+            TraceReplay.Report report = new TraceReplay(trace).replay(1);
+            assert report.operations == 2000 && report.finalHash == trace.sequentialHash();
+            report = new TraceReplay(trace).replay(4);
+            assert report.p50 <= report.p90 && report.p90 <= report.p99 && report.p99 <= report.max;
+        }
+        boolean failed = false;
+        try {
+            Trace.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+        } catch (IOException e) {
+            failed = true;
+        }
+        assert failed;
+        // ucięty plik z ogromną długością w nagłówku
+        Trace.Spec spec = new Trace.Spec();
+        spec.operations = 10;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Trace.generate(spec).write(out);
+        byte[] bytes = out.toByteArray();
+        int lengthOffset = bytes.length - 10 - 4;
+        bytes[lengthOffset] = 0x7F;
+        failed = false;
+        try {
+            Trace.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            failed = true;
+        }
+        assert failed;
+        // ogromny rozmiar w nagłówku
+        bytes = out.toByteArray();
+        bytes[lengthOffset - 4] = 0x7F;
+        failed = false;
+        try {
+            Trace.read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            failed = true;
+        }
+        assert failed;
+        // poza gorącą osią ścianki są równie częste
+        spec.kind = Trace.Kind.AXIS_SKEWED;
+        spec.operations = 40000;
+        spec.skew = 0;
+        spec.showRatio = 0;
+        Trace trace = Trace.generate(spec);
+        int[] counts = new int[6];
+        for (int i = 0; i < trace.length(); i++)
+            counts[trace.side(i)]++;
+        assert counts[1] == 0 && counts[3] == 0;
+        for (int side : new int[]{0, 2, 4, 5})
+            assert Math.abs(counts[side] - 10000) < 500 : Arrays.toString(counts);
+    }
+
+}
@@ -0,0 +1,297 @@
+package concurrentcube;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+// Niezmienny, zwarty zapis stanu kostki. Naklejki trzymamy w kolejności
+// z show, po 3 bity na naklejkę, 21 naklejek na jednego longa - kostka 3x3
+// zajmuje trzy longi. Kostkę 2x2 (najczęstszą w przeszukiwaniu) zapisujemy
+// po rogach w jednym longu bez tablicy (patrz Corners), więc w pamięci
+// mieszczą się dziesiątki milionów stanów.
+public abstract class PackedCubeState {
+
+    private static final int BITS = 3;
+    private static final int PER_WORD = 64 / BITS;
+    private static final long MASK = (1L << BITS) - 1;
+
+    // plany obrotów nieobróconej kostki dla każdego rozmiaru, po jednym na ściankę
+    private static final ConcurrentHashMap<Integer, UnsynchronizedCube.MovePlan[]> plans = new ConcurrentHashMap<>();
+
+    final int size;
+
+    private PackedCubeState(int size) {
+        this.size = size;
+    }
+
+    public static PackedCubeState solved(int size) {
+        return fromShown(size, new UnsynchronizedCube(size).show());
+    }
+
+    public static PackedCubeState fromShown(int size, String shown) {
+        int stickers = 6 * size * size;
+        if (shown.length() != stickers)
+            throw new IllegalArgumentException("expected " + stickers + " stickers, got " + shown.length());
+        for (int i = 0; i < stickers; i++)
+            if (shown.charAt(i) < '0' || shown.charAt(i) > '5')
+                throw new IllegalArgumentException("invalid sticker: " + shown.charAt(i));
+        if (size == 2)
+            return new Corners(shown);
+        long[] words = new long[(stickers + PER_WORD - 1) / PER_WORD];
+        for (int i = 0; i < stickers; i++)
+            words[i / PER_WORD] |= (long) (shown.charAt(i) - '0') << (BITS * (i % PER_WORD));
+        return new Stickers(size, words);
+    }
+
+    public static PackedCubeState of(UnsynchronizedCube cube) {
+        return fromShown(cube.getSize(), cube.show());
+    }
+
+    public static PackedCubeState of(Cube cube) throws InterruptedException {
+        return fromShown(cube.getSize(), cube.show());
+    }
+
+    public UnsynchronizedCube toUnsynchronizedCube() {
+        return new UnsynchronizedCube(size, toString());
+    }
+
+    public Cube toCube(BiConsumer<Integer, Integer> beforeRotation,
+                       BiConsumer<Integer, Integer> afterRotation,
+                       Runnable beforeShowing,
+                       Runnable afterShowing) {
+        return new Cube(new UnsynchronizedCube(size, toString()),
+                beforeRotation, afterRotation, beforeShowing, afterShowing);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // kolor naklejki na pozycji position w wyniku show
+    public abstract int sticker(int position);
+
+    // zwraca stan po obrocie, tak jak Cube.rotate(side, layer)
+    public abstract PackedCubeState apply(int side, int layer);
+
+    public boolean isSolved() {
+        for (int face = 0; face < 6; face++)
+            for (int i = 1; i < size * size; i++)
+                if (sticker(face * size * size + i) != sticker(face * size * size))
+                    return false;
+        return true;
+    }
+
+    // w formacie show
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder(6 * size * size);
+        for (int i = 0; i < 6 * size * size; i++)
+            res.append(sticker(i));
+        return res.toString();
+    }
+
+    private interface MovedSticker {
+        void accept(int to, int from);
+    }
+
+    // Wywołuje action dla każdej naklejki, którą przesuwa obrót (to i from to
+    // pozycje w show po obrocie i przed nim). Tak jak UnsynchronizedCube.rotate:
+    // rządki czterech ścianek według planu obrotu przesuwają się cyklicznie,
+    // a skrajna warstwa obraca też ściankę. Koszt jest proporcjonalny do
+    // liczby przesuwanych naklejek, więc nie trzymamy tablic permutacji.
+    private static void forEachMoved(int size, int side, int layer, MovedSticker action) {
+        UnsynchronizedCube.MovePlan plan = plans.computeIfAbsent(size, PackedCubeState::initialPlans)[side];
+        int area = size * size;
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            int from = area * plan.faces[i] + plan.offsets[i] + layer * plan.layerSteps[i];
+            int to = area * plan.faces[j] + plan.offsets[j] + layer * plan.layerSteps[j];
+            for (int t = 0; t < size; t++, from += plan.strides[i], to += plan.strides[j])
+                action.accept(to, from);
+        }
+        if (layer == 0)
+            forEachMovedOnFace(size, side, 1, action);
+        else if (layer == size - 1)
+            forEachMovedOnFace(size, UnsynchronizedCube.getOppositeSide(side), 3, action);
+    }
+
+    // obrót ścianki face tak, jakby jej rotation w UnsynchronizedCube zmieniło się z 0 na rotation
+    private static void forEachMovedOnFace(int size, int face, int rotation, MovedSticker action) {
+        int area = size * size;
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                int to = UnsynchronizedCube.shownPosition(size, rotation, row, column);
+                if (to != row * size + column)
+                    action.accept(area * face + to, area * face + row * size + column);
+            }
+        }
+    }
+
+    private static UnsynchronizedCube.MovePlan[] initialPlans(int size) {
+        UnsynchronizedCube.MovePlan[] res = new UnsynchronizedCube.MovePlan[6];
+        for (int side = 0; side < 6; side++)
+            res[side] = UnsynchronizedCube.initialPlan(size, side);
+        return res;
+    }
+
+    // naklejki po 3 bity
+    private static final class Stickers extends PackedCubeState {
+
+        private final long[] words;
+
+        Stickers(int size, long[] words) {
+            super(size);
+            this.words = words;
+        }
+
+        @Override
+        public int sticker(int position) {
+            return (int) (words[position / PER_WORD] >>> (BITS * (position % PER_WORD)) & MASK);
+        }
+
+        @Override
+        public PackedCubeState apply(int side, int layer) {
+            long[] res = words.clone();
+            forEachMoved(size, side, layer, (to, from) -> {
+                int shift = BITS * (to % PER_WORD);
+                res[to / PER_WORD] = res[to / PER_WORD] & ~(MASK << shift) | (long) sticker(from) << shift;
+            });
+            return new Stickers(size, res);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Stickers))
+                return false;
+            Stickers other = (Stickers) o;
+            return size == other.size && Arrays.equals(words, other.words);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * size + Arrays.hashCode(words);
+        }
+    }
+
+    // Kostka 2x2 po rogach. Slot to trzy naklejki, które zawsze obracają się
+    // razem: POSITIONS[s][a] to pozycja naklejki slotu s na ściance osi a.
+    // Pole slotu (6 bitów) to numer rogu p, który w nim leży (jego kolory
+    // w ułożonej kostce to COLORS[p]), i numer permutacji o, takie, że
+    // naklejka POSITIONS[s][a] ma kolor COLORS[p][PERMUTATIONS[o][a]].
+    // W danym slocie występują tylko 3 permutacje (skręcenia rogu), ale
+    // dopuszczając wszystkie 6, nie musimy ustalać skrętności slotów.
+    // Stan zajmuje 48 bitów, a żeby go zapisać, naklejki muszą tworzyć rogi.
+    private static final class Corners extends PackedCubeState {
+
+        private static final int[][] PERMUTATIONS = {{0, 1, 2}, {1, 2, 0}, {2, 0, 1}, {0, 2, 1}, {2, 1, 0}, {1, 0, 2}};
+        private static final int[][] POSITIONS = new int[8][3];
+        private static final int[][] COLORS = new int[8][3];
+        // slot i oś ścianki każdej naklejki
+        private static final int[] SLOT = new int[24];
+        private static final int[] AXIS = new int[24];
+        // dla ruchu 6 * warstwa + ścianka: slot, do którego trafia róg ze slotu s,
+        // i jego permutacja po ruchu, jeśli przed ruchem miał permutację o
+        private static final int[][] TARGET = new int[12][8];
+        private static final int[][][] PERMUTATION_AFTER = new int[12][8][6];
+
+        static {
+            // ścianki 0, 1 i 2 są z różnych osi, a obrót warstwy 0 każdej z nich
+            // przesuwa dokładnie naklejki czterech rogów, więc trzy bity -
+            // czy naklejkę przesuwa obrót danej ścianki - wyznaczają slot
+            for (int side = 0; side < 3; side++) {
+                int bit = 1 << side;
+                forEachMoved(2, side, 0, (to, from) -> SLOT[from] |= bit);
+            }
+            for (int position = 0; position < 24; position++) {
+                int face = position / 4;
+                AXIS[position] = UnsynchronizedCube.sideToAxis(face);
+                POSITIONS[SLOT[position]][AXIS[position]] = position;
+                COLORS[SLOT[position]][AXIS[position]] = face;
+            }
+            for (int move = 0; move < 12; move++) {
+                int[] target = TARGET[move];
+                // axisAfter[s][a] - oś ścianki, na którą trafia naklejka POSITIONS[s][a]
+                int[][] axisAfter = new int[8][];
+                for (int s = 0; s < 8; s++) {
+                    target[s] = s;
+                    axisAfter[s] = new int[]{0, 1, 2};
+                }
+                forEachMoved(2, move % 6, move / 6, (to, from) -> {
+                    target[SLOT[from]] = SLOT[to];
+                    axisAfter[SLOT[from]][AXIS[from]] = AXIS[to];
+                });
+                for (int s = 0; s < 8; s++)
+                    for (int o = 0; o < 6; o++)
+                        for (int after = 0; after < 6; after++)
+                            if (isMovedPermutation(PERMUTATIONS[o], axisAfter[s], PERMUTATIONS[after]))
+                                PERMUTATION_AFTER[move][s][o] = after;
+            }
+        }
+
+        // czy naklejka z osi a, która miała kolor rogu before[a], ma po ruchu kolor after[moved[a]]
+        private static boolean isMovedPermutation(int[] before, int[] moved, int[] after) {
+            for (int a = 0; a < 3; a++)
+                if (after[moved[a]] != before[a])
+                    return false;
+            return true;
+        }
+
+        private final long corners;
+
+        Corners(long corners) {
+            super(2);
+            this.corners = corners;
+        }
+
+        Corners(String shown) {
+            super(2);
+            long res = 0;
+            for (int s = 0; s < 8; s++)
+                res |= (long) field(shown, s) << (6 * s);
+            this.corners = res;
+        }
+
+        private static int field(String shown, int s) {
+            for (int p = 0; p < 8; p++) {
+                for (int o = 0; o < 6; o++) {
+                    boolean matches = true;
+                    for (int a = 0; a < 3; a++)
+                        matches &= shown.charAt(POSITIONS[s][a]) - '0' == COLORS[p][PERMUTATIONS[o][a]];
+                    if (matches)
+                        return p << 3 | o;
+                }
+            }
+            throw new IllegalArgumentException("stickers do not form corners of a 2x2 cube: " + shown);
+        }
+
+        @Override
+        public int sticker(int position) {
+            int field = (int) (corners >>> (6 * SLOT[position])) & 63;
+            return COLORS[field >> 3][PERMUTATIONS[field & 7][AXIS[position]]];
+        }
+
+        @Override
+        public PackedCubeState apply(int side, int layer) {
+            int move = 6 * layer + side;
+            long res = 0;
+            for (int s = 0; s < 8; s++) {
+                int field = (int) (corners >>> (6 * s)) & 63;
+                field = field & ~7 | PERMUTATION_AFTER[move][s][field & 7];
+                res |= (long) field << (6 * TARGET[move][s]);
+            }
+            return new Corners(res);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Corners && corners == ((Corners) o).corners;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(corners);
+        }
+    }
+}
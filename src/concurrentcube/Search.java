@@ -0,0 +1,200 @@
+package concurrentcube;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToIntFunction;
+
+// Równoległe przeszukiwanie przestrzeni stanów kostki.
+// Ruch to para {ścianka, warstwa}, tak jak w Cube.rotate.
+public class Search {
+
+    // do tej głębokości dzielimy przeszukiwanie w głąb na osobne zadania
+    private static final int SPLIT_DEPTH = 2;
+
+    private final ForkJoinPool pool;
+
+    public Search(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public Search() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // wszystkie obroty o 90 stopni zgodnie z ruchem wskazówek zegara
+    // (obrót przeciwny to obrót warstwy względem przeciwnej ścianki)
+    public static List<int[]> allMoves(int size) {
+        List<int[]> res = new ArrayList<>();
+        for (int side = 0; side < 6; side++)
+            for (int layer = 0; layer < size; layer++)
+                res.add(new int[]{side, layer});
+        return res;
+    }
+
+    // obroty, które nie ruszają narożnika między ściankami 3, 4 i 5,
+    // dzięki czemu nie odwiedzamy stanów różniących się tylko obrotem całej kostki
+    public static List<int[]> movesFixingCorner(int size) {
+        List<int[]> res = new ArrayList<>();
+        for (int side = 0; side < 6; side++)
+            for (int layer = 0; layer < size; layer++)
+                if (side < 3 ? layer < size - 1 : layer > 0)
+                    res.add(new int[]{side, layer});
+        return res;
+    }
+
+    private static boolean isInverse(int[] move, int[] previous, int size) {
+        return previous != null && move[0] == UnsynchronizedCube.getOppositeSide(previous[0])
+                && move[1] == size - 1 - previous[1];
+    }
+
+    private static void undo(UnsynchronizedCube cube, int[] move) {
+        cube.rotate(UnsynchronizedCube.getOppositeSide(move[0]), cube.getSize() - 1 - move[1]);
+    }
+
+    public List<Long> explore(UnsynchronizedCube start, List<int[]> moves, int maxDepth) {
+        return explore(PackedCubeState.of(start), moves, maxDepth);
+    }
+
+    // Przeszukiwanie wszerz warstwami do głębokości maxDepth. Każda warstwa
+    // jest rozwijana równolegle, a stany trzymamy w postaci PackedCubeState,
+    // więc porównujemy je dokładnie. Zwraca liczby nowych stanów na kolejnych
+    // głębokościach (bez pustych warstw na końcu).
+    public List<Long> explore(PackedCubeState start, List<int[]> moves, int maxDepth) {
+        Set<PackedCubeState> visited = ConcurrentHashMap.newKeySet();
+        visited.add(start);
+        List<PackedCubeState> frontier = Collections.singletonList(start);
+        List<Long> res = new ArrayList<>();
+        for (int depth = 0; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            res.add((long) frontier.size());
+            if (depth == maxDepth)
+                break;
+            ConcurrentLinkedQueue<PackedCubeState> next = new ConcurrentLinkedQueue<>();
+            List<PackedCubeState> current = frontier;
+            pool.submit(() -> current.parallelStream().forEach(state -> {
+                for (int[] move : moves) {
+                    PackedCubeState neighbour = state.apply(move[0], move[1]);
+                    if (visited.add(neighbour))
+                        next.add(neighbour);
+                }
+            })).join();
+            frontier = new ArrayList<>(next);
+        }
+        return res;
+    }
+
+    public List<int[]> solve(UnsynchronizedCube start, List<int[]> moves, int maxDepth) {
+        return solve(start, moves, maxDepth, cube -> 0);
+    }
+
+    // IDA*: przeszukiwanie w głąb z rosnącym ograniczeniem, z pierwszymi
+    // SPLIT_DEPTH poziomami rozdzielonymi między wątki puli. Heurystyka musi być
+    // dopuszczalna (nie przeszacowywać liczby brakujących ruchów), żeby znalezione
+    // rozwiązanie było najkrótsze. Zwraca listę ruchów albo null, jeśli nie ma
+    // rozwiązania o długości co najwyżej maxDepth.
+    public List<int[]> solve(UnsynchronizedCube start, List<int[]> moves, int maxDepth,
+                             ToIntFunction<UnsynchronizedCube> heuristic) {
+        if (start.isSolved())
+            return new ArrayList<>();
+        for (int bound = 1; bound <= maxDepth; bound++) {
+            AtomicReference<List<int[]>> found = new AtomicReference<>();
+            // dla stanów, które już przeszukaliśmy w tej iteracji,
+            // pamiętamy największą liczbę ruchów, jaka nam wtedy została;
+            // stany porównujemy po stateHash, więc istnieje znikome
+            // (rzędu n^2 / 2^65) prawdopodobieństwo pomylenia dwóch stanów
+            ConcurrentHashMap<Long, Integer> transpositions = new ConcurrentHashMap<>();
+            pool.invoke(new SearchTask(new UnsynchronizedCube(start), new ArrayList<>(), bound,
+                    moves, heuristic, found, transpositions));
+            if (found.get() != null)
+                return found.get();
+        }
+        return null;
+    }
+
+    private static class SearchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final UnsynchronizedCube cube;
+        private final List<int[]> path;
+        private final int bound;
+        private final List<int[]> moves;
+        private final ToIntFunction<UnsynchronizedCube> heuristic;
+        private final AtomicReference<List<int[]>> found;
+        private final ConcurrentHashMap<Long, Integer> transpositions;
+
+        SearchTask(UnsynchronizedCube cube, List<int[]> path, int bound, List<int[]> moves,
+                   ToIntFunction<UnsynchronizedCube> heuristic, AtomicReference<List<int[]>> found,
+                   ConcurrentHashMap<Long, Integer> transpositions) {
+            this.cube = cube;
+            this.path = path;
+            this.bound = bound;
+            this.moves = moves;
+            this.heuristic = heuristic;
+            this.found = found;
+            this.transpositions = transpositions;
+        }
+
+        @Override
+        protected void compute() {
+            if (path.size() >= SPLIT_DEPTH) {
+                search();
+                return;
+            }
+            List<SearchTask> tasks = new ArrayList<>();
+            for (int[] move : moves) {
+                if (!path.isEmpty() && isInverse(move, path.get(path.size() - 1), cube.getSize()))
+                    continue;
+                cube.rotate(move[0], move[1]);
+                List<int[]> nextPath = new ArrayList<>(path);
+                nextPath.add(move);
+                if (cube.isSolved())
+                    found.compareAndSet(null, nextPath);
+                else if (isWorthVisiting(cube, bound - nextPath.size()))
+                    tasks.add(new SearchTask(new UnsynchronizedCube(cube), nextPath, bound,
+                            moves, heuristic, found, transpositions));
+                undo(cube, move);
+            }
+            invokeAll(tasks);
+        }
+
+        private boolean isWorthVisiting(UnsynchronizedCube cube, int movesLeft) {
+            if (movesLeft <= 0 || found.get() != null || heuristic.applyAsInt(cube) > movesLeft)
+                return false;
+            // z jednym ruchem w zapasie taniej jest po prostu sprawdzić sąsiadów
+            if (movesLeft <= 1)
+                return true;
+            long hash = cube.stateHash();
+            Integer seen = transpositions.get(hash);
+            if (seen != null && seen >= movesLeft)
+                return false;
+            transpositions.merge(hash, movesLeft, Math::max);
+            return true;
+        }
+
+        // sekwencyjne przeszukiwanie w głąb na kopii należącej do tego zadania
+        private void search() {
+            int[] previous = path.get(path.size() - 1);
+            for (int[] move : moves) {
+                if (found.get() != null)
+                    return;
+                if (isInverse(move, previous, cube.getSize()))
+                    continue;
+                cube.rotate(move[0], move[1]);
+                path.add(move);
+                if (cube.isSolved())
+                    found.compareAndSet(null, new ArrayList<>(path));
+                else if (isWorthVisiting(cube, bound - path.size()))
+                    search();
+                path.remove(path.size() - 1);
+                undo(cube, move);
+            }
+        }
+    }
+}
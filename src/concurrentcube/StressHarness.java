@@ -0,0 +1,405 @@
+package concurrentcube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Losowe obciążenie kostki wieloma wątkami z przerwaniami wstrzykiwanymi
+// we wszystkich miejscach czekania w Sync.start. Zapisuje historię operacji
+// i po zakończeniu sprawdza ją z sekwencyjnym modelem (UnsynchronizedCube):
+// - bezpieczeństwo: w sekcji krytycznej naraz są tylko obroty jednej osi
+//   i różnych warstw, a show zawsze sam,
+// - poprawność: obroty wykonane w kolejności wejść do sekcji krytycznej dają
+//   wyniki show i stan końcowy takie, jak zaobserwowane,
+// - przerwania i limity czasu: przerwany albo nieudany (po upływie limitu)
+//   obrót nie wszedł do sekcji krytycznej,
+// - żywotność: operacje nie stoją dłużej niż stallMillis (zgubione budzenie),
+// - sprawiedliwość: żaden wątek nie wyprzedził czekającej operacji
+//   więcej niż overtakeBound razy.
+// Przy okazji mierzy przepustowość.
+public class StressHarness {
+
+    public static class Config {
+        public int size = 4;
+        public int threads = 8;
+        public int operationsPerThread = 2000;
+        // prawdopodobieństwo, że operacja to show
+        public double showRatio = 0.1;
+        // prawdopodobieństwo przerwania w każdym miejscu czekania
+        public double interruptAtWait = 0.05;
+        // maska bitowa miejsc czekania (Sync.REP_WAIT itd.), w których przerywamy
+        public int waitPoints = 0b1111;
+        // co ile mikrosekund osobny wątek przerywa losowego pracownika (0 - nigdy)
+        public int asyncInterruptMicros = 200;
+        // prawdopodobieństwo, że obrót ma limit czasu (0 mikrosekund - tryRotate)
+        public double timedRatio = 0;
+        public int timeoutMicros = 50;
+        public long stallMillis = 5000;
+        // Heurystyka: Sync nie daje ścisłego ograniczenia, bo reprezentanci
+        // osi czekają na jednym niesprawiedliwym semaforze.
+        public int overtakeBound = 32;
+        public long seed = 1;
+    }
+
+    public static class Report {
+        public final List<String> violations = new ArrayList<>();
+        public long completed;
+        public long interrupted;
+        public long timedOut;
+        public long injectedInterrupts;
+        public int maxOvertakes;
+        public long maxWaitNanos;
+        public double operationsPerSecond;
+
+        public boolean isCorrect() {
+            return violations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d completed, %d interrupted (%d injected at wait points), %d timed out, "
+                            + "%.0f ops/s, max overtakes %d, max wait %.3f ms, %d violations%s",
+                    completed, interrupted, injectedInterrupts, timedOut, operationsPerSecond, maxOvertakes,
+                    maxWaitNanos / 1e6, violations.size(),
+                    violations.isEmpty() ? "" : ":\n  " + String.join("\n  ", violations));
+        }
+    }
+
+    private static final int SHOW_AXIS = 3;
+    private static final long NONE = Long.MAX_VALUE;
+
+    private static class Operation {
+        final int thread;
+        final int side;
+        final int layer;
+        // oś i warstwa w rozumieniu Sync (show ma fikcyjną oś)
+        final int axis;
+        final int syncLayer;
+        final boolean timed;
+        long invoked;
+        // kiedy pierwszy raz doszła do miejsca czekania w Sync (0 - nie czekała)
+        long waitingSince;
+        long enteredAt;
+        long returned;
+        // numery z zegara logicznego, nadawane w funkcjach przed i po operacji
+        long entered = NONE;
+        long exited = NONE;
+        boolean wasInterrupted;
+        boolean timedOut;
+        String shown;
+
+        Operation(int thread, int side, int layer, boolean timed, int size) {
+            this.thread = thread;
+            this.side = side;
+            this.layer = layer;
+            this.timed = timed;
+            if (side < 0) {
+                axis = SHOW_AXIS;
+                syncLayer = -1;
+            } else {
+                axis = UnsynchronizedCube.sideToAxis(side);
+                syncLayer = side < UnsynchronizedCube.getOppositeSide(side) ? layer : size - layer - 1;
+            }
+        }
+
+        boolean isShow() {
+            return side < 0;
+        }
+
+        // show może działać razem z innymi show, a obroty tylko z obrotami
+        // tej samej osi i innych warstw
+        boolean conflictsWith(Operation other) {
+            return axis != other.axis || (axis != SHOW_AXIS && syncLayer == other.syncLayer);
+        }
+
+        @Override
+        public String toString() {
+            return (isShow() ? "show" : (timed ? "timed rotate(" : "rotate(") + side + ", " + layer + ")")
+                    + " by thread " + thread;
+        }
+    }
+
+    private final Config config;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong progress = new AtomicLong();
+    private final AtomicLong injected = new AtomicLong();
+    private final ThreadLocal<Operation> current = new ThreadLocal<>();
+
+    public StressHarness(Config config) {
+        this.config = config;
+    }
+
+    // operacje spoza pracowników (np. końcowe show) nie są zapisywane
+    private void enter() {
+        Operation operation = current.get();
+        if (operation != null) {
+            operation.entered = clock.getAndIncrement();
+            operation.enteredAt = System.nanoTime();
+        }
+    }
+
+    private void exit() {
+        Operation operation = current.get();
+        if (operation != null)
+            operation.exited = clock.getAndIncrement();
+    }
+
+    public Report run() throws InterruptedException {
+        Cube cube = new Cube(config.size, (x, y) -> enter(), (x, y) -> exit(), this::enter, this::exit);
+        cube.setWaitProbe(waitPoint -> {
+            Operation operation = current.get();
+            if (operation == null)
+                return;
+            if (operation.waitingSince == 0)
+                operation.waitingSince = System.nanoTime();
+            if ((config.waitPoints & (1 << waitPoint)) != 0
+                    && ThreadLocalRandom.current().nextDouble() < config.interruptAtWait) {
+                injected.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+        });
+        Random seeds = new Random(config.seed);
+        Operation[][] history = new Operation[config.threads][config.operationsPerThread];
+        for (int t = 0; t < config.threads; t++) {
+            Random random = new Random(seeds.nextLong());
+            for (int i = 0; i < config.operationsPerThread; i++) {
+                boolean show = random.nextDouble() < config.showRatio;
+                boolean timed = !show && random.nextDouble() < config.timedRatio;
+                history[t][i] = new Operation(t, show ? -1 : random.nextInt(6),
+                        show ? -1 : random.nextInt(config.size), timed, config.size);
+            }
+        }
+
+        Thread[] workers = new Thread[config.threads];
+        for (int t = 0; t < config.threads; t++) {
+            Operation[] operations = history[t];
+            workers[t] = new Thread(() -> {
+                for (Operation operation : operations) {
+                    // przerwanie, które przyszło po poprzedniej operacji, nas nie dotyczy
+                    Thread.interrupted();
+                    current.set(operation);
+                    operation.invoked = System.nanoTime();
+                    try {
+                        if (operation.isShow())
+                            operation.shown = cube.show();
+                        else if (!operation.timed)
+                            cube.rotate(operation.side, operation.layer);
+                        else if (config.timeoutMicros == 0)
+                            operation.timedOut = !cube.tryRotate(operation.side, operation.layer);
+                        else
+                            operation.timedOut = !cube.rotate(operation.side, operation.layer,
+                                    config.timeoutMicros, TimeUnit.MICROSECONDS);
+                    } catch (InterruptedException e) {
+                        operation.wasInterrupted = true;
+                    }
+                    operation.returned = System.nanoTime();
+                    current.set(null);
+                    progress.incrementAndGet();
+                }
+            }, "stress-" + t);
+            // zakleszczonych pracowników zostawiamy, więc nie mogą blokować końca programu
+            workers[t].setDaemon(true);
+        }
+
+        Report report = new Report();
+        Thread interrupter = new Thread(() -> {
+            Random random = new Random(config.seed);
+            while (!Thread.currentThread().isInterrupted()) {
+                workers[random.nextInt(workers.length)].interrupt();
+                LockSupport.parkNanos(config.asyncInterruptMicros * 1000L);
+            }
+        }, "stress-interrupter");
+        interrupter.setDaemon(true);
+
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+            worker.start();
+        if (config.asyncInterruptMicros > 0)
+            interrupter.start();
+        boolean finished = awaitWorkers(workers, history, cube, report);
+        long time = System.nanoTime() - start;
+        interrupter.interrupt();
+        interrupter.join();
+
+        if (finished)
+            check(history, cube, report);
+        report.injectedInterrupts = injected.get();
+        report.operationsPerSecond = report.completed / (time / 1e9);
+        return report;
+    }
+
+    // Czeka na pracowników. Jeśli przez stallMillis nikt nie skończył żadnej
+    // operacji, to zgłasza zakleszczenie (albo zgubione budzenie) z listą
+    // niezakończonych operacji i zostawia pracowników, bo nie da się
+    // ich bezpiecznie zatrzymać.
+    private boolean awaitWorkers(Thread[] workers, Operation[][] history, Cube cube, Report report)
+            throws InterruptedException {
+        long lastProgress = -1, lastChange = System.nanoTime();
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                worker.join(10);
+                long now = System.nanoTime();
+                if (progress.get() != lastProgress) {
+                    lastProgress = progress.get();
+                    lastChange = now;
+                } else if (now - lastChange > config.stallMillis * 1_000_000) {
+                    // dla każdej niezakończonej operacji miejsce w Sync, w którym stoi
+                    List<String> pending = new ArrayList<>();
+                    for (Operation[] operations : history) {
+                        for (Operation operation : operations) {
+                            if (operation.returned != 0) {
+                                if (operation.wasInterrupted)
+                                    report.interrupted++;
+                                else if (operation.timedOut)
+                                    report.timedOut++;
+                                else
+                                    report.completed++;
+                            } else if (operation.invoked != 0) {
+                                String where = "";
+                                for (StackTraceElement frame : workers[operation.thread].getStackTrace()) {
+                                    if (frame.getClassName().equals(Sync.class.getName())) {
+                                        where = " at Sync." + frame.getMethodName() + ":" + frame.getLineNumber();
+                                        break;
+                                    }
+                                }
+                                pending.add(operation + where);
+                            }
+                        }
+                    }
+                    report.violations.add("no progress for " + config.stallMillis + " ms (deadlock or lost wakeup), "
+                            + "pending: " + pending + ", sync: " + cube.describeSync());
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void check(Operation[][] history, Cube cube, Report report) throws InterruptedException {
+        List<Operation> entered = new ArrayList<>();
+        for (Operation[] operations : history) {
+            for (Operation operation : operations) {
+                if (operation.wasInterrupted) {
+                    report.interrupted++;
+                    if (operation.entered != NONE)
+                        report.violations.add(operation + " was interrupted after entering the critical section");
+                } else if (operation.timedOut) {
+                    report.timedOut++;
+                    if (operation.entered != NONE)
+                        report.violations.add(operation + " timed out after entering the critical section");
+                } else {
+                    report.completed++;
+                    if (operation.entered == NONE || operation.exited == NONE)
+                        report.violations.add(operation + " returned without entering the critical section");
+                    else
+                        entered.add(operation);
+                }
+                report.maxWaitNanos = Math.max(report.maxWaitNanos, operation.returned - operation.invoked);
+            }
+        }
+        entered.sort(Comparator.comparingLong(operation -> operation.entered));
+
+        // bezpieczeństwo: przechodzimy po wejściach i wyjściach w kolejności zegara
+        long[][] events = new long[2 * entered.size()][];
+        for (int i = 0; i < entered.size(); i++) {
+            events[2 * i] = new long[]{entered.get(i).entered, i};
+            events[2 * i + 1] = new long[]{entered.get(i).exited, i};
+        }
+        Arrays.sort(events, Comparator.comparingLong(event -> event[0]));
+        List<Operation> inside = new ArrayList<>();
+        for (long[] event : events) {
+            Operation operation = entered.get((int) event[1]);
+            if (event[0] == operation.exited) {
+                inside.remove(operation);
+                continue;
+            }
+            for (Operation other : inside)
+                if (operation.conflictsWith(other))
+                    report.violations.add(operation + " entered while " + other + " was inside");
+            inside.add(operation);
+        }
+
+        // poprawność: wykonujemy obroty w kolejności wejść
+        UnsynchronizedCube model = new UnsynchronizedCube(config.size);
+        for (Operation operation : entered) {
+            if (!operation.isShow())
+                model.rotate(operation.side, operation.layer);
+            else if (!Objects.equals(operation.shown, model.show()))
+                report.violations.add(operation + " saw a state no sequential execution produces");
+        }
+        if (!Objects.equals(cube.show(), model.show()))
+            report.violations.add("final state differs from the sequential model");
+
+        // sprawiedliwość: ile razy jeden wątek wszedł z kolidującą operacją
+        // wywołaną już po tym, jak nasza zaczęła czekać w Sync (liczymy od
+        // miejsca czekania, bo na jednym procesorze wątek może stać długo,
+        // zanim w ogóle dojdzie do Sync)
+        entered.sort(Comparator.comparingLong(operation -> operation.invoked));
+        for (Operation operation : entered) {
+            if (operation.waitingSince == 0)
+                continue;
+            int[] overtakes = new int[config.threads];
+            int first = firstInvokedAfter(entered, operation.waitingSince);
+            for (int j = first; j < entered.size() && entered.get(j).invoked < operation.enteredAt; j++) {
+                Operation other = entered.get(j);
+                if (other.enteredAt < operation.enteredAt && other.thread != operation.thread
+                        && operation.conflictsWith(other))
+                    overtakes[other.thread]++;
+            }
+            for (int count : overtakes) {
+                report.maxOvertakes = Math.max(report.maxOvertakes, count);
+                if (count > config.overtakeBound)
+                    report.violations.add(operation + " was overtaken " + count + " times by one thread");
+            }
+        }
+    }
+
+    // entered jest posortowane po invoked
+    private static int firstInvokedAfter(List<Operation> entered, long time) {
+        int low = 0, high = entered.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entered.get(middle).invoked <= time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // Argumenty: rozmiar, wątki, operacje na wątek, prawdopodobieństwo
+    // przerwania w miejscu czekania, ziarno, maska miejsc czekania (binarnie),
+    // co ile mikrosekund przerywać losowego pracownika, odsetek obrotów
+    // z limitem czasu, limit w mikrosekundach.
+    public static void main(String[] args) throws InterruptedException {
+        Config config = new Config();
+        if (args.length > 0)
+            config.size = Integer.parseInt(args[0]);
+        if (args.length > 1)
+            config.threads = Integer.parseInt(args[1]);
+        if (args.length > 2)
+            config.operationsPerThread = Integer.parseInt(args[2]);
+        if (args.length > 3)
+            config.interruptAtWait = Double.parseDouble(args[3]);
+        if (args.length > 4)
+            config.seed = Long.parseLong(args[4]);
+        if (args.length > 5)
+            config.waitPoints = Integer.parseInt(args[5], 2);
+        if (args.length > 6)
+            config.asyncInterruptMicros = Integer.parseInt(args[6]);
+        if (args.length > 7)
+            config.timedRatio = Double.parseDouble(args[7]);
+        if (args.length > 8)
+            config.timeoutMicros = Integer.parseInt(args[8]);
+        Report report = new StressHarness(config).run();
+        System.out.println(report);
+        System.exit(report.isCorrect() ? 0 : 1);
+    }
+}
@@ -1,6 +1,10 @@
 package concurrentcube;
 
+import java.util.Arrays;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
 
 public class Sync {
     private final Semaphore mutex;
@@ -22,25 +26,90 @@ public class Sync {
     // mutex, ale nie protection.
     private final Semaphore protection;
 
+    // Miejsca w start, w których wątek może czekać. Przed każdym z nich
+    // wywołujemy probe (jeśli jest ustawiony), co pozwala StressHarness
+    // wstrzykiwać przerwania dokładnie w tych miejscach.
+    static final int REP_WAIT = 0;
+    static final int MEMBER_WAIT = 1;
+    static final int INHERITED_REP_WAIT = 2;
+    static final int LAYER_WAIT = 3;
+    // ustawiany przed uruchomieniem wątków korzystających z kostki
+    private IntConsumer probe = null;
+
     private final int[] rotationsWaiting;
     private boolean repInterrupted = false;
-    private final int[] stolenCrit;
     private int currentAxis = -1;
     private int rotationsRunning;
     private int axesWaiting;
     private int allRotationsWaiting;
 
-    private void start(int axis) throws InterruptedException {
+    private void probe(int waitPoint) {
+        if (probe != null)
+            probe.accept(waitPoint);
+    }
+
+    void setProbe(IntConsumer probe) {
+        this.probe = probe;
+    }
+
+    // Mutex może być właśnie przekazywany przez semafor przerwanemu procesowi,
+    // który czeka na interruptMutex, żeby obsłużyć przerwanie. Dlatego mając
+    // interruptMutex, nie czekamy na mutex, tylko w razie potrzeby na chwilę
+    // oddajemy interruptMutex. Pętla się kończy, bo interruptMutex jest
+    // sprawiedliwy: oddany trafia do czekającego przerwanego procesu, a nie
+    // z powrotem do nas, więc ten obsłuży przerwanie i odda mutex.
+    private void acquireMutexHoldingInterruptMutex() {
+        while (!mutex.tryAcquire()) {
+            interruptMutex.release();
+            Thread.yield();
+            interruptMutex.acquireUninterruptibly();
+        }
+    }
+
+    static final long NO_TIMEOUT = -1;
+
+    // Czeka na semafor najwyżej do deadline (jeśli czekanie ma limit). Po
+    // przekroczeniu czasu zgłasza TimeoutException, który obsługujemy tak samo
+    // jak przerwanie: wycofujemy się z kolejki albo przechodzimy, jeśli
+    // semafor został dla nas otwarty w ostatniej chwili.
+    private static void await(Semaphore semaphore, long nanos, long deadline)
+            throws InterruptedException, TimeoutException {
+        if (nanos == NO_TIMEOUT)
+            semaphore.acquire();
+        else if (!semaphore.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+            throw new TimeoutException();
+    }
+
+    // nanos to NO_TIMEOUT albo najdłuższy czas czekania (0 - nie czekamy na inne operacje)
+    private void start(int axis, long nanos, long deadline) throws InterruptedException, TimeoutException {
         // flaga mówiąca, czy jesteśmy reprezentantem grupy (do obsługi przerwań)
         boolean isRep = false;
-        protection.acquireUninterruptibly();
-        mutex.acquireUninterruptibly();
+        if (nanos == NO_TIMEOUT || nanos == 0) {
+            // Protection i mutex są zajęte tylko na czas krótkich fragmentów
+            // protokołów (także przy kaskadowym budzeniu), więc nawet nie chcąc
+            // czekać, przeczekujemy je - inaczej tryStart zawodziłby wtedy, gdy
+            // nic nie stoi na przeszkodzie. Rezygnujemy dopiero przy sprawdzaniu
+            // osi i warstwy.
+            protection.acquireUninterruptibly();
+            mutex.acquireUninterruptibly();
+        } else {
+            if (!protection.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                throw new TimeoutException();
+            mutex.acquireUninterruptibly();
+        }
         // jeśli nikogo nie ma w sekcji krytycznej, to wchodzimy
         if (currentAxis == -1)
             currentAxis = axis;
         // jeśli w sekcji krytycznej są procesy z innego gatunku niż nasz lub jeśli
         // czekają już procesy innego gatunku, to czekamy
         else if (currentAxis != axis || allRotationsWaiting - rotationsWaiting[axis] > 0) {
+            // kto nie chce czekać, nie zapisuje się do kolejki, więc rezygnacja
+            // nie wymaga obsługi takiej jak przy przerwaniu
+            if (nanos == 0) {
+                mutex.release();
+                protection.release();
+                throw new TimeoutException();
+            }
             allRotationsWaiting++;
             rotationsWaiting[axis]++;
             try {
@@ -50,13 +119,15 @@ public class Sync {
                     isRep = true;
                     mutex.release();
                     protection.release();
-                    waitingAxes.acquire();
+                    probe(REP_WAIT);
+                    await(waitingAxes, nanos, deadline);
                     axesWaiting--;
                     currentAxis = axis;
                 } else {
                     mutex.release();
                     protection.release();
-                    waitingRotations[axis].acquire();
+                    probe(MEMBER_WAIT);
+                    await(waitingRotations[axis], nanos, deadline);
                     // jeśli reprezentant został przerwany, to oddał nam pozycję
                     // reprezentanta (my musimy zawiesić się na semaforze reprezentantów)
                     if (repInterrupted) {
@@ -65,99 +136,95 @@ public class Sync {
                         mutex.release();
                         // nie oddajemy protection,
                         // bo dostaliśmy tylko mutexa
-                        waitingAxes.acquire();
+                        probe(INHERITED_REP_WAIT);
+                        await(waitingAxes, nanos, deadline);
                         axesWaiting--;
                         currentAxis = axis;
                     }
                 }
-            } catch (InterruptedException e) {
-                // jeśli zostaliśmy przerwani, to musimy atomowo jednocześnie sprawdzić,
-                // czy jest otwarty dla nas semafor i przywrócić stan systemu
-                interruptMutex.acquireUninterruptibly();
-                // jeśli został już dla nas otwarty semafor,
-                // to możemy po prostu przejść
-                if (isRep && waitingAxes.tryAcquire()) {
-                    axesWaiting--;
-                    currentAxis = axis;
-                } else if (waitingRotations[axis].tryAcquire()) {
-                    // jeśli zostaliśmy wybudzeni dlatego, że mamy zostać nowym reprezentantem, to jednak
-                    // nie możemy przejść i musimy posprzątać lub wybudzić nowego reprezentanta
-                    if (isRep || repInterrupted) {
-                        rotationsWaiting[axis]--;
-                        allRotationsWaiting--;
-                        // tak samo jeśli została wybudzona kaskadowo nasza oś, a jesteśmy reprezentantem
-                        // (dość podły przeplot, ale tak może się zdarzyć),
-                        // to mamy i protection i mutex, i musimy je zwolnić
-                        if (isRep) {
-                            if (rotationsWaiting[axis] == 0)
+            } catch (InterruptedException | TimeoutException e) {
+                // jeśli zostaliśmy przerwani (albo skończył się czas), to musimy atomowo
+                // jednocześnie sprawdzić, czy jest otwarty dla nas semafor i przywrócić stan systemu
+                while (true) {
+                    interruptMutex.acquireUninterruptibly();
+                    // jeśli został już dla nas otwarty semafor,
+                    // to możemy po prostu przejść
+                    if (isRep && waitingAxes.tryAcquire()) {
+                        axesWaiting--;
+                        currentAxis = axis;
+                        break;
+                    } else if (waitingRotations[axis].tryAcquire()) {
+                        // jeśli zostaliśmy wybudzeni dlatego, że mamy zostać nowym reprezentantem, to jednak
+                        // nie możemy przejść i musimy posprzątać lub wybudzić nowego reprezentanta
+                        if (isRep || repInterrupted) {
+                            rotationsWaiting[axis]--;
+                            allRotationsWaiting--;
+                            // tak samo jeśli została wybudzona kaskadowo nasza oś, a jesteśmy reprezentantem
+                            // (dość podły przeplot, ale tak może się zdarzyć),
+                            // to mamy i protection i mutex, i musimy je zwolnić
+                            if (isRep) {
                                 axesWaiting--;
-                            protection.release();
-                            mutex.release();
+                                // jeśli za nami czekają jeszcze rotacje z naszej osi, to kontynuujemy
+                                // kaskadę zamiast oddawać mutexy (inaczej zostałyby bez reprezentanta,
+                                // a oś dalej liczyłaby się jako czekająca)
+                                if (rotationsWaiting[axis] > 0) {
+                                    waitingRotations[axis].release();
+                                } else {
+                                    protection.release();
+                                    mutex.release();
+                                }
+                                interruptMutex.release();
+                                throw e;
+                            }
+                            if (rotationsWaiting[axis] == 0) {
+                                axesWaiting--;
+                                repInterrupted = false;
+                                mutex.release();
+                                // nie oddajemy protection,
+                                // bo dostaliśmy tylko mutexa
+                            } else {
+                                waitingRotations[axis].release();
+                                // odziedziczyliśmy tylko mutexa, przekazujemy dalej tylko mutexa
+                            }
                             interruptMutex.release();
                             throw e;
                         }
-                        if (rotationsWaiting[axis] == 0) {
-                            axesWaiting--;
-                            repInterrupted = false;
-                            mutex.release();
-                            // nie oddajemy protection,
-                            // bo dostaliśmy tylko mutexa
-                        } else {
-                            waitingRotations[axis].release();
-                            // odziedziczyliśmy tylko mutexa, przekazujemy dalej tylko mutexa
+                        break;
+                    } else {
+                        // bierzemy tylko mutexa, a nie protection,
+                        // żeby można było nam go oddać przed kaskadowym budzeniem.
+                        // Nie możemy jednak na niego czekać: mutex może właśnie być
+                        // przekazywany (razem z semaforem) przerwanemu procesowi, który
+                        // do obsługi przerwania potrzebuje trzymanego przez nas interruptMutex.
+                        // Wtedy oddajemy interruptMutex i sprawdzamy wszystko od nowa
+                        // (w międzyczasie mógł zostać otwarty semafor dla nas);
+                        // tak jak w acquireMutexHoldingInterruptMutex sprawiedliwy
+                        // interruptMutex najpierw dostanie tamten proces.
+                        if (!mutex.tryAcquire()) {
+                            interruptMutex.release();
+                            Thread.yield();
+                            continue;
                         }
-                        interruptMutex.release();
-                        throw e;
-                    }
-                } else {
-                    // jeśli od razu przed naszą obsługą przerwań została oddana sekcja krytyczna
-                    // (tylko mutex) potencjalnemu nowemu reprezentantowi, ale semafor czekających
-                    // rotacji stał się pusty w wyniku przerwania, to musimy tę sekcję krytyczną
-                    // ukraść, żeby nie doszło do zakleszczenia. Skoro semafor czekających jest pusty,
-                    // to zmniejszamy liczbę czekających osi (przerwany proces tego nie zrobi,
-                    // bo jeszcze nie jest reprezentantem). Tak samo za niego zmniejszamy liczbę działających
-                    // rotacji (i go o tym informujemy w zmiennej stolenCrit).
-                    if (repInterrupted) {
-                        for (int i = 0; i < 4; i++) {
-                            if (waitingRotations[i].tryAcquire()) {
-                                stolenCrit[i]++;
-                                repInterrupted = false;
+                        rotationsWaiting[axis]--;
+                        allRotationsWaiting--;
+                        if (rotationsWaiting[axis] == 0) {
+                            // tylko reprezentant ma prawo zmniejszyć liczbę czekających osi
+                            // (są podłe przeploty, w których faktycznie tutaj może wejść niereprezentant)
+                            if (isRep)
                                 axesWaiting--;
-                                rotationsWaiting[i]--;
-                                allRotationsWaiting--;
-                            }
+                            mutex.release();
                         }
-                    }
-                    // bierzemy tylko mutexa, a nie protection,
-                    // żeby można było nam go oddać przed kaskadowym budzeniem
-                    else
-                        mutex.acquireUninterruptibly();
-                    // jeśli ktoś mi ukradł sekcję krytyczną, to nie mam już nic do roboty
-                    if (stolenCrit[axis] > 0) {
-                        stolenCrit[axis]--;
-                        mutex.release();
+                        // jeśli byliśmy reprezentantem,
+                        // to musimy wyznaczyć nowego reprezentanta
+                        else if (isRep) {
+                            repInterrupted = true;
+                            // przekazujemy sekcję krytyczną (tylko mutex)
+                            waitingRotations[axis].release();
+                        } else
+                            mutex.release();
                         interruptMutex.release();
                         throw e;
                     }
-                    rotationsWaiting[axis]--;
-                    allRotationsWaiting--;
-                    if (rotationsWaiting[axis] == 0) {
-                        // tylko reprezentant ma prawo zmniejszyć liczbę czekających osi
-                        // (są podłe przeploty, w których faktycznie tutaj może wejść niereprezentant)
-                        if (isRep)
-                            axesWaiting--;
-                        mutex.release();
-                    }
-                    // jeśli byliśmy reprezentantem,
-                    // to musimy wyznaczyć nowego reprezentanta
-                    else if (isRep) {
-                        repInterrupted = true;
-                        // przekazujemy sekcję krytyczną (tylko mutex)
-                        waitingRotations[axis].release();
-                    } else
-                        mutex.release();
-                    interruptMutex.release();
-                    throw e;
                 }
                 interruptMutex.release();
             }
@@ -171,7 +238,7 @@ public class Sync {
         // potem zabieramy interruptMutex, a potem zostaje nam przejść przez otwarty mutex.
         mutex.release();
         interruptMutex.acquireUninterruptibly();
-        mutex.acquireUninterruptibly();
+        acquireMutexHoldingInterruptMutex();
         if (rotationsWaiting[axis] > 0)
             // budzimy kaskadowo z przekazaniem sekcji krytycznej
             waitingRotations[axis].release();
@@ -192,7 +259,7 @@ public class Sync {
         // pomiędzy protection a mutexem zdobywamy interruptMutex,
         // żeby nie zakleszczyć się z procesami obsługującymi przerwania
         interruptMutex.acquireUninterruptibly();
-        mutex.acquireUninterruptibly();
+        acquireMutexHoldingInterruptMutex();
         rotationsRunning--;
         if (rotationsRunning == 0) {
             if (axesWaiting > 0)
@@ -214,8 +281,18 @@ public class Sync {
 
     private final Semaphore[] waitingForLayers;
 
-    private void startLayer(int layer) throws InterruptedException {
-        waitingForLayers[layer].acquire();
+    private void startLayer(int layer, long nanos, long deadline) throws InterruptedException, TimeoutException {
+        // Wolną warstwę bierzemy od razu, a probe wywołujemy dopiero wtedy,
+        // gdy naprawdę trzeba czekać, jak w pozostałych miejscach czekania.
+        // Przerwanie zgłaszamy tak jak acquire, także przy wolnej warstwie.
+        if (nanos != 0 && Thread.interrupted())
+            throw new InterruptedException();
+        if (waitingForLayers[layer].tryAcquire())
+            return;
+        if (nanos == 0)
+            throw new TimeoutException();
+        probe(LAYER_WAIT);
+        await(waitingForLayers[layer], nanos, deadline);
     }
 
     private void endLayer(int layer) {
@@ -223,14 +300,38 @@ public class Sync {
     }
 
     void start(int axis, int layer) throws InterruptedException {
-        start(axis);
+        start(axis, layer, NO_TIMEOUT);
+    }
+
+    // zwraca false, jeśli nie udało się wejść w ciągu nanos nanosekund
+    boolean start(int axis, int layer, long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
         try {
-            startLayer(layer);
+            start(axis, nanos, deadline);
+        } catch (TimeoutException e) {
+            return false;
+        }
+        try {
+            startLayer(layer, nanos, deadline);
         } catch (InterruptedException e) {
             // jeśli zostaliśmy przerwani w trakcie czekania na warstwę,
             // to musimy wyjść z sekcji krytycznej
             end(axis);
             throw e;
+        } catch (TimeoutException e) {
+            end(axis);
+            return false;
+        }
+        return true;
+    }
+
+    // na inne operacje nie czekamy, a na protokoły czekamy nieprzerywalnie,
+    // więc nie da się nas przerwać
+    boolean tryStart(int axis, int layer) {
+        try {
+            return start(axis, layer, 0);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
         }
     }
 
@@ -245,22 +346,40 @@ public class Sync {
     // ale to rozwiązanie nie traci ani
     // na żywotności, ani na współbieżności.
     void startShow() throws InterruptedException {
-        start(3);
+        try {
+            start(3, NO_TIMEOUT, 0);
+        } catch (TimeoutException e) {
+            // bez limitu czasu nie ma przekroczenia
+            throw new AssertionError(e);
+        }
     }
     void endShow() {
         end(3);
     }
 
+    // stan do diagnostyki zakleszczeń (czytany bez mutexa, więc przybliżony)
+    @Override
+    public String toString() {
+        return "currentAxis=" + currentAxis + ", rotationsRunning=" + rotationsRunning
+                + ", axesWaiting=" + axesWaiting + ", allRotationsWaiting=" + allRotationsWaiting
+                + ", rotationsWaiting=" + Arrays.toString(rotationsWaiting)
+                + ", repInterrupted=" + repInterrupted
+                + ", permits: mutex=" + mutex.availablePermits() + " protection=" + protection.availablePermits()
+                + " interruptMutex=" + interruptMutex.availablePermits() + " waitingAxes=" + waitingAxes.availablePermits()
+                + " waitingRotations=" + Arrays.toString(Arrays.stream(waitingRotations)
+                        .mapToInt(Semaphore::availablePermits).toArray());
+    }
+
     Sync(int size) {
         mutex = new Semaphore(1);
-        interruptMutex = new Semaphore(1);
+        // sprawiedliwy, patrz acquireMutexHoldingInterruptMutex
+        interruptMutex = new Semaphore(1, true);
         protection = new Semaphore(1);
         waitingAxes = new Semaphore(0);
         waitingRotations = new Semaphore[4];
         for (int i = 0; i < 4; i++)
             waitingRotations[i] = new Semaphore(0);
         rotationsWaiting = new int[4];
-        stolenCrit = new int[4];
         waitingForLayers = new Semaphore[size];
         for (int i = 0; i < size; i++)
             waitingForLayers[i] = new Semaphore(1);
@@ -0,0 +1,229 @@
+package concurrentcube;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+// Zapis ciągu operacji na kostce (obroty i show) do odtwarzania w pomiarach.
+// Generowane ciągi zależą tylko od parametrów i ziarna, więc ten sam
+// ślad można odtworzyć na innej maszynie albo zapisać do pliku.
+public final class Trace {
+
+    // side operacji show
+    public static final int SHOW = -1;
+
+    private static final int MAGIC = 0x43554254;
+    private static final int VERSION = 1;
+    // Największa obsługiwana kostka. Odtworzenie śladu tworzy kostkę, a przy
+    // 4096 to już 100 milionów naklejek, więc większy rozmiar w nagłówku
+    // oznacza uszkodzony plik, a nie prawdziwy ślad.
+    public static final int MAX_SIZE = 1 << 12;
+    // ścianki spoza osi 0
+    private static final int[] COLD_SIDES = {0, 2, 4, 5};
+
+    public enum Kind {
+        // losowe obroty (i rzadkie show), jak przy mieszaniu kostki
+        UNIFORM("uniform"),
+        // z prawdopodobieństwem skew obrót osi 0 (ścianki 1 i 3)
+        AXIS_SKEWED("axis-skewed"),
+        // z prawdopodobieństwem skew obrót tej samej warstwy (ścianka 0, warstwa 0)
+        HOT_LAYER("hot-layer"),
+        // z prawdopodobieństwem skew show
+        SHOW_HEAVY("show-heavy");
+
+        private final String name;
+
+        Kind(String name) {
+            this.name = name;
+        }
+
+        public static Kind of(String name) {
+            for (Kind kind : values())
+                if (kind.name.equals(name))
+                    return kind;
+            throw new IllegalArgumentException("unknown workload: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static class Spec {
+        public Kind kind = Kind.UNIFORM;
+        public int size = 3;
+        public int operations = 100_000;
+        public long seed = 1;
+        // prawdopodobieństwo show (poza SHOW_HEAVY)
+        public double showRatio = 0.01;
+        public double skew = 0.8;
+
+        @Override
+        public String toString() {
+            return kind + " size=" + size + " operations=" + operations + " seed=" + seed
+                    + " showRatio=" + showRatio + " skew=" + skew;
+        }
+    }
+
+    private final int size;
+    private final String description;
+    private final int[] sides;
+    private final int[] layers;
+
+    private Trace(int size, String description, int[] sides, int[] layers) {
+        this.size = size;
+        this.description = description;
+        this.sides = sides;
+        this.layers = layers;
+    }
+
+    public static Trace generate(Spec spec) {
+        if (spec.size <= 0 || spec.size > MAX_SIZE || spec.operations < 0)
+            throw new IllegalArgumentException("invalid workload: " + spec);
+        Random random = new Random(spec.seed);
+        int[] sides = new int[spec.operations];
+        int[] layers = new int[spec.operations];
+        for (int i = 0; i < spec.operations; i++) {
+            boolean skewed = random.nextDouble() < spec.skew;
+            int side = random.nextInt(6), layer = random.nextInt(spec.size);
+            switch (spec.kind) {
+                case AXIS_SKEWED:
+                    // ścianki osi 0 albo (poza gorącą osią) pozostałe cztery
+                    side = skewed ? (side % 2 == 0 ? 1 : 3) : COLD_SIDES[random.nextInt(4)];
+                    break;
+                case HOT_LAYER:
+                    if (skewed) {
+                        side = 0;
+                        layer = 0;
+                    }
+                    break;
+                case SHOW_HEAVY:
+                    if (skewed)
+                        side = SHOW;
+                    break;
+                default:
+                    break;
+            }
+            if (spec.kind != Kind.SHOW_HEAVY && random.nextDouble() < spec.showRatio)
+                side = SHOW;
+            sides[i] = side;
+            layers[i] = side == SHOW ? 0 : layer;
+        }
+        return new Trace(spec.size, spec.toString(), sides, layers);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int length() {
+        return sides.length;
+    }
+
+    public int side(int i) {
+        return sides[i];
+    }
+
+    public int layer(int i) {
+        return layers[i];
+    }
+
+    // hasz stanu po wykonaniu wszystkich operacji po kolei
+    public long sequentialHash() {
+        UnsynchronizedCube cube = new UnsynchronizedCube(size);
+        for (int i = 0; i < sides.length; i++)
+            if (sides[i] != SHOW)
+                cube.rotate(sides[i], layers[i]);
+        return cube.stateHash();
+    }
+
+    // Nagłówek (magiczna liczba, wersja, opis, rozmiar, liczba operacji),
+    // a potem każda operacja jako liczba 7 * warstwa + (side + 1) zapisana
+    // po 7 bitów na bajt, więc dla kostek do 18x18 to jeden bajt na operację.
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeUTF(description);
+        data.writeInt(size);
+        data.writeInt(sides.length);
+        for (int i = 0; i < sides.length; i++) {
+            int value = 7 * layers[i] + sides[i] + 1;
+            while ((value & ~0x7F) != 0) {
+                data.writeByte(value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            data.writeByte(value);
+        }
+        data.flush();
+    }
+
+    public static Trace read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("not a cube trace");
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("unsupported trace version " + version);
+        String description = data.readUTF();
+        int size = data.readInt(), length = data.readInt();
+        if (size <= 0 || size > MAX_SIZE || length < 0)
+            throw new IOException("corrupted trace header");
+        // długości z nagłówka nie ufamy (uszkodzony plik mógłby zażądać
+        // gigabajtów), więc tablice rosną w miarę czytania operacji
+        int[] sides = new int[Math.min(length, 1 << 16)];
+        int[] layers = new int[sides.length];
+        for (int i = 0; i < length; i++) {
+            if (i == sides.length) {
+                int capacity = (int) Math.min(length, 2L * sides.length);
+                sides = Arrays.copyOf(sides, capacity);
+                layers = Arrays.copyOf(layers, capacity);
+            }
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 28)
+                    throw new IOException("corrupted operation " + i);
+                int b = data.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    break;
+            }
+            if (value < 0 || value / 7 >= size)
+                throw new IOException("layer out of range in operation " + i);
+            sides[i] = value % 7 - 1;
+            layers[i] = value / 7;
+        }
+        return new Trace(size, description, sides, layers);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Trace))
+            return false;
+        Trace other = (Trace) o;
+        return size == other.size && Arrays.equals(sides, other.sides) && Arrays.equals(layers, other.layers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * size + Arrays.hashCode(sides)) + Arrays.hashCode(layers);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,100 @@
+package concurrentcube;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+// Odtwarza ślad na kostce Cube z podaną liczbą wątków. Operacja i trafia
+// do wątku i % threads, więc każdy wątek wykonuje swoje operacje w kolejności
+// ze śladu, a proporcje operacji w czasie są takie jak w śladzie.
+public class TraceReplay {
+
+    public static class Report {
+        public int threads;
+        public long operations;
+        public double seconds;
+        public double operationsPerSecond;
+        // czasy pojedynczych operacji (z czekaniem w Sync) w nanosekundach
+        public long p50;
+        public long p90;
+        public long p99;
+        public long p999;
+        public long max;
+        public long finalHash;
+        // hasz po wykonaniu śladu po kolei; przy wielu wątkach kolejność
+        // obrotów różnych osi zależy od przeplotu, więc może się różnić
+        public long sequentialHash;
+
+        @Override
+        public String toString() {
+            return String.format("%d threads: %d operations in %.3f s, %.0f ops/s%n"
+                            + "latency us: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n"
+                            + "final state hash %016x (sequential %016x%s)",
+                    threads, operations, seconds, operationsPerSecond,
+                    p50 / 1e3, p90 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3,
+                    finalHash, sequentialHash, finalHash == sequentialHash ? ", same" : ", different");
+        }
+    }
+
+    private final Trace trace;
+
+    public TraceReplay(Trace trace) {
+        this.trace = trace;
+    }
+
+    public Report replay(int threads) throws InterruptedException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        Cube cube = new Cube(trace.getSize(), (x, y) -> {}, (x, y) -> {}, () -> {}, () -> {});
+        long[] latencies = new long[trace.length()];
+        CountDownLatch ready = new CountDownLatch(threads), go = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            workers[t] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    for (int i = first; i < trace.length(); i += threads) {
+                        long start = System.nanoTime();
+                        if (trace.side(i) == Trace.SHOW)
+                            cube.show();
+                        else
+                            cube.rotate(trace.side(i), trace.layer(i));
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "replay-" + t);
+            workers[t].start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        long time = System.nanoTime() - start;
+
+        Report report = new Report();
+        report.threads = threads;
+        report.operations = trace.length();
+        report.seconds = time / 1e9;
+        report.operationsPerSecond = trace.length() / report.seconds;
+        Arrays.sort(latencies);
+        report.p50 = percentile(latencies, 0.5);
+        report.p90 = percentile(latencies, 0.9);
+        report.p99 = percentile(latencies, 0.99);
+        report.p999 = percentile(latencies, 0.999);
+        report.max = latencies.length == 0 ? 0 : latencies[latencies.length - 1];
+        report.finalHash = cube.stateHash();
+        report.sequentialHash = trace.sequentialHash();
+        return report;
+    }
+
+    // sorted jest posortowana rosnąco
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,511 @@
+package concurrentcube;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Kostka bez synchronizacji i bez funkcji wywoływanych przy obrotach.
+// Obroty różnych warstw tej samej osi mogą się wykonywać współbieżnie
+// (z tego korzysta Cube), wszystko inne wymaga wyłączności.
+public class UnsynchronizedCube {
+
+    // Dane zmieniane równocześnie przez obroty różnych warstw jednej osi
+    // rozkładamy tak, żeby różne wątki nie pisały do jednej linii pamięci
+    // podręcznej (64 bajty): między danymi różnych ścianek albo pasów
+    // liczników jest co najmniej linia odstępu.
+    private static final int LINE_INTS = 16;
+    private static final int LINE_LONGS = 8;
+
+    // stickers[ścianka][size * wiersz + kolumna]
+    private final int[][] stickers;
+    // rotation[LINE_INTS * ścianka], bo równocześnie obracają się przeciwne ścianki
+    private final int[] rotation;
+    // Plany obrotów (patrz MovePlan): plans[4 * ścianka + r] to plan dla kostki,
+    // której wszystkie ścianki są obrócone o r. Rządek i-ty planu zależy tylko
+    // od obrotu ścianki faces[i], więc obrót bierze każdy rządek z planu dla
+    // obrotu jego ścianki i nie trzeba niczego przeliczać po obrocie ścianki.
+    // Plany zależą tylko od rozmiaru, więc kostki jednego rozmiaru je współdzielą.
+    private final MovePlan[] plans;
+    private static final ConcurrentHashMap<Integer, MovePlan[]> planTables = new ConcurrentHashMap<>();
+    private final int size;
+    // Liczniki i hasze mogą być podzielone na pasy: obrót warstwy o numerze l
+    // (w rozumieniu Sync) zapisuje zmiany w pasie l % stripes, a odczyt
+    // sumuje pasy. Obroty tej samej osi mają różne warstwy, więc zwykle
+    // piszą do różnych pasów; atomowe, bo pasów bywa mniej niż warstw.
+    // Odczyt kosztuje tyle, ile jest pasów, więc domyślnie jest jeden pas,
+    // a więcej trzeba zamówić w konstruktorze (tutaj albo w Cube).
+    private final int stripes;
+    private static final int COUNTS_STRIDE = 18 + LINE_LONGS;
+    private static final int HASHES_STRIDE = 6 + LINE_LONGS;
+    // Ile naklejek danego koloru przybyło na danej ściance w danym pasie.
+    // Liczniki ścianki pakujemy po kilka w longu (pola ze znakiem, bo w pasie
+    // może ubyć naklejek), żeby obrót zmieniał je jedną operacją atomową
+    // na słowo, a nie sześcioma: kostki do 22 mieszczą wszystkie liczniki
+    // ścianki w jednym słowie, do 1023 - w dwóch, większe - w trzech.
+    // Licznik koloru jest w słowie countWord[kolor] na bitach od
+    // countShift[kolor], czyli colorCounts[COUNTS_STRIDE * pas + 3 * ścianka + countWord[kolor]]
+    private final AtomicLongArray colorCounts;
+    private final int countBits;
+    private final int[] countWord, countShift;
+    // Hasz Zobrista stanu widocznego w show, liczony względem ułożonej kostki
+    // (ułożona ma hasz 0, więc nie trzeba go liczyć w konstruktorze).
+    // Trzymamy hasz każdej ścianki tak, jakby nie była obrócona; klucze są
+    // dobrane tak (patrz positionKey), że hasz ścianki obróconej o rotation
+    // to jego przesunięcie cykliczne o 16 * rotation bitów, więc obrót
+    // ścianki nie zmienia haszy. faceHashes[HASHES_STRIDE * pas + ścianka]
+    private final AtomicLongArray faceHashes;
+    // Klucze pozycji (patrz positionKey) wspólne dla kostek tego rozmiaru.
+    // Liczenie klucza kosztuje więcej niż przesunięcie naklejki, więc hasze
+    // utrzymujemy przy obrotach tylko wtedy, gdy klucze są w tablicy; duże
+    // kostki (keys == null) liczą hasz od nowa w stateHash. Tablice zostają
+    // w pamięci, więc ograniczamy ich rozmiar.
+    private final long[] keys;
+    private static final int MAX_KEYS = 1 << 16;
+    private static final ConcurrentHashMap<Integer, long[]> keyTables = new ConcurrentHashMap<>();
+
+    // tutaj minimalna magia, chcemy,
+    // żeby funkcja każdej osi przypisała
+    // własną liczbę od 0 do 2
+    static int sideToAxis(int side) {
+        return ((side + 2) % 5) % 3;
+    }
+
+    private static final int[] OPPOSITE_SIDE = new int[6];
+
+    static {
+        for (int side = 0; side < 6; side++)
+            for (int i = 0; i < 6; i++)
+                if (sideToAxis(i) == sideToAxis(side) && i != side)
+                    OPPOSITE_SIDE[side] = i;
+    }
+
+    static int getOppositeSide(int side) {
+        return OPPOSITE_SIDE[side];
+    }
+
+    // początkowe doWeFlip i isRotatingHorizontal, [currentSide][side]
+    private static final boolean[][] INITIAL_FLIP = new boolean[6][6];
+    private static final boolean[][] INITIAL_HORIZONTAL = new boolean[6][6];
+
+    static {
+        // wartości wynikające z ponumerowania ścianek kostki
+        for (int side = 0; side < 6; side++) {
+            for (int currentSide = 0; currentSide < 6; currentSide++) {
+                switch (side) {
+                    case 0:
+                        INITIAL_FLIP[currentSide][side] = false;
+                        break;
+                    case 1:
+                        INITIAL_FLIP[currentSide][side] = currentSide != 4;
+                        break;
+                    case 3:
+                        INITIAL_FLIP[currentSide][side] = currentSide == 4;
+                        break;
+                    case 2:
+                        INITIAL_FLIP[currentSide][side] = currentSide != 1 &&
+                            currentSide != 5;
+                        break;
+                    case 4:
+                        INITIAL_FLIP[currentSide][side] = currentSide == 1 ||
+                            currentSide == 5;
+                        break;
+                    default:
+                        INITIAL_FLIP[currentSide][side] = true;
+                }
+                INITIAL_HORIZONTAL[currentSide][side] =
+                        (sideToAxis(side) == 2) || (sideToAxis(currentSide) == 2 && sideToAxis(side) == 1);
+            }
+        }
+    }
+
+    private static int nextSide(int anchorSide, int prevSide) {
+        // wartości wynikające z ponumerowania ścianek kostki
+        switch (anchorSide) {
+            case 0:
+                return prevSide == 1 ? 4 : prevSide - 1;
+            case 1:
+                return prevSide == 2 ? 5 : prevSide == 5 ? 4 : (prevSide + 2) % 6;
+            case 2:
+                return prevSide == 0 ? 3 : prevSide == 1 ? 0 : (prevSide + 2) % 6;
+            default:
+                // obracamy w przeciwną stronę niż gdybyśmy obracali względem przeciwnej ścianki
+                return getOppositeSide(nextSide(getOppositeSide(anchorSide), prevSide));
+        }
+    }
+
+    public UnsynchronizedCube(int size) {
+        this(size, 1);
+    }
+
+    // kostka z licznikami podzielonymi na stripes pasów (nie więcej niż warstw)
+    public UnsynchronizedCube(int size, int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        stickers = new int[6][size * size];
+        for (int i = 0; i < 6; i++)
+            Arrays.fill(stickers[i], i);
+        this.size = size;
+        this.stripes = Math.max(1, Math.min(size, stripes));
+        int countsPerWord = size * size < 1 << 9 ? 6 : size * size < 1 << 20 ? 3 : 2;
+        this.countBits = 64 / countsPerWord;
+        this.countWord = new int[6];
+        this.countShift = new int[6];
+        for (int color = 0; color < 6; color++) {
+            countWord[color] = color / countsPerWord;
+            countShift[color] = countBits * (color % countsPerWord);
+        }
+        this.colorCounts = new AtomicLongArray(this.stripes * COUNTS_STRIDE);
+        // stan początkowy zapisujemy w pasie 0
+        for (int i = 0; i < 6; i++)
+            addCount(i, i, size * size);
+        this.faceHashes = new AtomicLongArray(this.stripes * HASHES_STRIDE);
+        this.rotation = new int[6 * LINE_INTS];
+        this.plans = planTables.computeIfAbsent(size, UnsynchronizedCube::planTable);
+        this.keys = 6L * size * size <= MAX_KEYS ? keyTables.computeIfAbsent(size, UnsynchronizedCube::keyTable) : null;
+    }
+
+    // odtwarza kostkę z wyniku show (ścianki nie są wtedy obrócone)
+    public UnsynchronizedCube(int size, String shown) {
+        this(size, 1);
+        if (shown.length() != 6 * size * size)
+            throw new IllegalArgumentException("expected " + 6 * size * size + " stickers, got " + shown.length());
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < size; j++) {
+                for (int k = 0; k < size; k++) {
+                    int color = shown.charAt((i * size + j) * size + k) - '0';
+                    if (color < 0 || color > 5)
+                        throw new IllegalArgumentException("invalid sticker: " + shown.charAt((i * size + j) * size + k));
+                    stickers[i][j * size + k] = color;
+                    addCount(i, i, -1);
+                    addCount(i, color, 1);
+                }
+            }
+            if (keys != null)
+                faceHashes.set(i, computeFaceHash(i));
+        }
+    }
+
+    public UnsynchronizedCube(UnsynchronizedCube other) {
+        size = other.size;
+        stickers = new int[6][];
+        for (int i = 0; i < 6; i++)
+            stickers[i] = other.stickers[i].clone();
+        rotation = other.rotation.clone();
+        stripes = other.stripes;
+        countBits = other.countBits;
+        countWord = other.countWord;
+        countShift = other.countShift;
+        colorCounts = new AtomicLongArray(other.colorCounts.length());
+        for (int i = 0; i < colorCounts.length(); i++)
+            colorCounts.set(i, other.colorCounts.get(i));
+        faceHashes = new AtomicLongArray(other.faceHashes.length());
+        for (int i = 0; i < faceHashes.length(); i++)
+            faceHashes.set(i, other.faceHashes.get(i));
+        keys = other.keys;
+        // plany są niezmienne, więc możemy je współdzielić
+        plans = other.plans;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // obrót ścianki zmienia tylko to, z którego planu bierzemy jej rządki (patrz plans)
+    public void rotateClockwise(int currentSide) {
+        rotation[LINE_INTS * currentSide] = (rotation[LINE_INTS * currentSide] + 1) % 4;
+    }
+
+    public void rotateCounterclockwise(int side) {
+        rotateClockwise(side);
+        rotateClockwise(side);
+        rotateClockwise(side);
+    }
+
+    // Plan obrotu warstwy względem danej ścianki: cztery rządki na kolejnych
+    // ściankach, które obrót przesuwa cyklicznie (rządek i trafia na miejsce
+    // rządka i + 1). t-ta naklejka i-tego rządka dla warstwy layer leży w
+    // stickers[faces[i]][offsets[i] + layer * layerSteps[i] + t * strides[i]],
+    // w tym samym porządku, w jakim przenosiła je dawniej funkcja exchange.
+    static final class MovePlan {
+
+        final int[] faces = new int[4];
+        final int[] offsets = new int[4];
+        final int[] layerSteps = new int[4];
+        final int[] strides = new int[4];
+
+        MovePlan(int size, boolean[][] doWeFlip, boolean[][] isRotatingHorizontal, int side) {
+            int currentSide = side == 5 || side == 0 ? 1 : 0;
+            for (int i = 0; i < 4; i++) {
+                boolean horizontal = isRotatingHorizontal[currentSide][side];
+                boolean flipped = doWeFlip[currentSide][side];
+                // w przypadku poziomym: jeśli mamy do czynienia z kostką, którą musimy odbić,
+                // to musimy odbić także numer warstwy (w przypadku pionowym odwrotnie)
+                boolean changesLayers = flipped == horizontal;
+                // o ile przesuwa się rządek przy zmianie warstwy i naklejka w rządku
+                int layerStep = horizontal ? size : 1, step = horizontal ? 1 : size;
+                faces[i] = currentSide;
+                offsets[i] = (changesLayers ? (size - 1) * layerStep : 0) + (flipped ? (size - 1) * step : 0);
+                layerSteps[i] = changesLayers ? -layerStep : layerStep;
+                strides[i] = flipped ? -step : step;
+                currentSide = nextSide(side, currentSide);
+            }
+        }
+    }
+
+    // plan dla kostki, której ścianki nie są obrócone (np. odtworzonej z show),
+    // więc naklejki stickers[face][i] są na pozycji size * size * face + i w show
+    static MovePlan initialPlan(int size, int side) {
+        return new MovePlan(size, INITIAL_FLIP, INITIAL_HORIZONTAL, side);
+    }
+
+    private static MovePlan[] planTable(int size) {
+        MovePlan[] res = new MovePlan[24];
+        boolean[][] doWeFlip = new boolean[6][], isRotatingHorizontal = new boolean[6][];
+        for (int currentSide = 0; currentSide < 6; currentSide++) {
+            doWeFlip[currentSide] = INITIAL_FLIP[currentSide].clone();
+            isRotatingHorizontal[currentSide] = INITIAL_HORIZONTAL[currentSide].clone();
+        }
+        for (int r = 0; r < 4; r++) {
+            for (int side = 0; side < 6; side++)
+                res[4 * side + r] = new MovePlan(size, doWeFlip, isRotatingHorizontal, side);
+            // obracamy wszystkie ścianki o 90 stopni
+            for (int currentSide = 0; currentSide < 6; currentSide++) {
+                for (int side = 0; side < 6; side++) {
+                    // jeśli mieliśmy poziomy rządek, to obrócenie kostki o 90 stopni zmienia to, czy powinniśmy
+                    // go odwrócić (i vice versa)
+                    doWeFlip[currentSide][side] = doWeFlip[currentSide][side] != isRotatingHorizontal[currentSide][side];
+                    // obrócenie ścianki o 90 stopni zmienia poziom na pion
+                    isRotatingHorizontal[currentSide][side] = !isRotatingHorizontal[currentSide][side];
+                }
+            }
+        }
+        return res;
+    }
+
+    // Plan, z którego bierzemy i-ty rządek obrotu względem side. Obroty tej
+    // samej osi obracają tylko jej dwie ścianki, a rządki leżą na pozostałych,
+    // więc współbieżny obrót nie zmienia tu rotation.
+    private MovePlan plan(int side, int i) {
+        return plans[4 * side + rotation[LINE_INTS * plans[4 * side].faces[i]]];
+    }
+
+    // Klucz pozycji index ścianki face (przy rotation 0); klucze kolorów na tej
+    // pozycji to jego przesunięcia cykliczne (zobristKey). Jeśli obrót ścianki
+    // o 90 stopni przenosi pozycję p na q, to klucz q jest kluczem p przesuniętym
+    // o 16 bitów, więc pozycje z jednej orbity obrotu mają jeden losowy klucz
+    // (SplitMix64 z numeru pozycji z wycinka row < (size + 1) / 2, column < size / 2),
+    // a środek nieparzystej ścianki - klucz o okresie 16 bitów.
+    private long positionKey(int face, int index) {
+        return keys != null ? keys[size * size * face + index] : computePositionKey(size, face, index);
+    }
+
+    private static long[] keyTable(int size) {
+        long[] res = new long[6 * size * size];
+        for (int face = 0; face < 6; face++)
+            for (int index = 0; index < size * size; index++)
+                res[size * size * face + index] = computePositionKey(size, face, index);
+        return res;
+    }
+
+    private static long computePositionKey(int size, int face, int index) {
+        int row = index / size, column = index - row * size;
+        boolean isCenter = size % 2 == 1 && 2 * row == size - 1 && 2 * column == size - 1;
+        int steps = 0;
+        while (!isCenter && (row >= (size + 1) / 2 || column >= size / 2)) {
+            // odwrotność obrotu (row, column) -> (column, size - 1 - row)
+            int previousRow = size - 1 - column;
+            column = row;
+            row = previousRow;
+            steps++;
+        }
+        // numer pozycji zaczyna się od 1 jak w SplitMix64 - dla 0 klucz byłby zerem
+        long z = ((long) size * size * face + row * size + column + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        if (isCenter)
+            return (z & 0xFFFF) * 0x0001000100010001L;
+        return Long.rotateLeft(z, 16 * steps);
+    }
+
+    private static long zobristKey(long positionKey, int color) {
+        return Long.rotateLeft(positionKey, 10 * color);
+    }
+
+    // pozycja naklejki stickers[face][size * row + column] w wyniku show, gdy ścianka jest obrócona o rotation
+    static int shownPosition(int size, int rotation, int row, int column) {
+        switch (rotation) {
+            case 0:
+                return row * size + column;
+            case 1:
+                return column * size + size - 1 - row;
+            case 2:
+                return (size - 1 - row) * size + size - 1 - column;
+            default:
+                return (size - 1 - column) * size + row;
+        }
+    }
+
+    // Zmiana hasza, gdy naklejka na pozycji index ścianki face zmienia kolor
+    // z oldColor na newColor. Klucze kolorów jednej pozycji są przesunięciami
+    // jednego klucza, więc gdy kolor się nie zmienia, zmiana jest zerem i nie
+    // trzeba tego sprawdzać.
+    private long keyChange(long[] keys, int face, int index, int oldColor, int newColor) {
+        long key = keys[size * size * face + index];
+        return zobristKey(key, oldColor) ^ zobristKey(key, newColor);
+    }
+
+    // hasz ścianki face (przy rotation 0) liczony od nowa z naklejek
+    private long computeFaceHash(int face) {
+        long res = 0;
+        for (int index = 0; index < size * size; index++) {
+            int color = stickers[face][index];
+            if (color != face) {
+                long key = positionKey(face, index);
+                res ^= zobristKey(key, color) ^ zobristKey(key, face);
+            }
+        }
+        return res;
+    }
+
+    private void rotateFace(int side, int layer) {
+        if (layer == 0)
+            rotateClockwise(side);
+        else if (layer == size - 1)
+            rotateCounterclockwise(getOppositeSide(side));
+    }
+
+    public void rotate(int side, int layer) {
+        // rotacja ścianki przyczepionej do warstwy, o ile taka istnieje
+        rotateFace(side, layer);
+
+        // rotacja warstwy
+        MovePlan p0 = plan(side, 0), p1 = plan(side, 1), p2 = plan(side, 2), p3 = plan(side, 3);
+        int[] faces = p0.faces;
+        int[] s0 = stickers[faces[0]], s1 = stickers[faces[1]], s2 = stickers[faces[2]], s3 = stickers[faces[3]];
+        int i0 = p0.offsets[0] + layer * p0.layerSteps[0], d0 = p0.strides[0];
+        int i1 = p1.offsets[1] + layer * p1.layerSteps[1], d1 = p1.strides[1];
+        int i2 = p2.offsets[2] + layer * p2.layerSteps[2], d2 = p2.strides[2];
+        int i3 = p3.offsets[3] + layer * p3.layerSteps[3], d3 = p3.strides[3];
+        // Zmiany liczników i haszy zbieramy lokalnie, a zapisujemy raz na obrót.
+        // Rządek i trafia na miejsce rządka i + 1, więc ścianka faces[i] zyskuje
+        // kolory rządka i - 1 i traci kolory swojego; liczymy kolory rządków
+        // (leaving[6 * i + kolor]), bez rozgałęzień zależnych od kolorów.
+        int[] leaving = new int[24];
+        long[] hashesDelta = new long[4];
+        long[] keys = this.keys;
+        for (int t = 0; t < size; t++, i0 += d0, i1 += d1, i2 += d2, i3 += d3) {
+            int c0 = s0[i0], c1 = s1[i1], c2 = s2[i2], c3 = s3[i3];
+            s0[i0] = c3;
+            s1[i1] = c0;
+            s2[i2] = c1;
+            s3[i3] = c2;
+            leaving[c0]++;
+            leaving[6 + c1]++;
+            leaving[12 + c2]++;
+            leaving[18 + c3]++;
+            if (keys != null) {
+                hashesDelta[0] ^= keyChange(keys, faces[0], i0, c0, c3);
+                hashesDelta[1] ^= keyChange(keys, faces[1], i1, c1, c0);
+                hashesDelta[2] ^= keyChange(keys, faces[2], i2, c2, c1);
+                hashesDelta[3] ^= keyChange(keys, faces[3], i3, c3, c2);
+            }
+        }
+        int stripe = (side < getOppositeSide(side) ? layer : size - 1 - layer) % stripes;
+        long[] countsDelta = new long[3];
+        for (int i = 0; i < 4; i++) {
+            int previous = (i + 3) % 4;
+            for (int color = 0; color < 6; color++)
+                countsDelta[countWord[color]] += (long) (leaving[6 * previous + color] - leaving[6 * i + color]) << countShift[color];
+            for (int word = 0; word < 3; word++) {
+                if (countsDelta[word] != 0)
+                    colorCounts.addAndGet(COUNTS_STRIDE * stripe + 3 * faces[i] + word, countsDelta[word]);
+                countsDelta[word] = 0;
+            }
+            if (hashesDelta[i] != 0)
+                faceHashes.accumulateAndGet(HASHES_STRIDE * stripe + faces[i], hashesDelta[i], (x, y) -> x ^ y);
+        }
+    }
+
+    // dodaje delta do licznika koloru color ścianki face w pasie 0
+    private void addCount(int face, int color, int delta) {
+        colorCounts.addAndGet(3 * face + countWord[color], (long) delta << countShift[color]);
+    }
+
+    public int[] faceColorCounts(int face) {
+        // sumujemy słowa pasów, a dopiero potem rozpakowujemy: suma słów
+        // zawiera sumy liczników, bo każda suma mieści się w swoim polu
+        long[] words = new long[3];
+        for (int stripe = 0; stripe < stripes; stripe++)
+            for (int word = 0; word < 3; word++)
+                words[word] += colorCounts.get(COUNTS_STRIDE * stripe + 3 * face + word);
+        int[] res = new int[6];
+        for (int color = 0; color < 6; color++) {
+            // pola są ze znakiem, więc po odczytaniu najniższego pola
+            // odejmujemy je, zanim przesuniemy słowo do następnego
+            int word = countWord[color];
+            long field = words[word] << (64 - countBits) >> (64 - countBits);
+            res[color] = (int) field;
+            words[word] = (words[word] - field) >> countBits;
+        }
+        return res;
+    }
+
+    public boolean isFaceUniform(int face) {
+        for (int count : faceColorCounts(face))
+            if (count == size * size)
+                return true;
+        return false;
+    }
+    public boolean isSolved() {
+        for (int face = 0; face < 6; face++)
+            if (!isFaceUniform(face))
+                return false;
+        return true;
+    }
+
+    public long stateHash() {
+        long res = 0;
+        for (int face = 0; face < 6; face++) {
+            long hash = 0;
+            if (keys != null) {
+                for (int stripe = 0; stripe < stripes; stripe++)
+                    hash ^= faceHashes.get(HASHES_STRIDE * stripe + face);
+            } else {
+                hash = computeFaceHash(face);
+            }
+            res ^= Long.rotateLeft(hash, 16 * rotation[LINE_INTS * face]);
+        }
+        return res;
+    }
+
+    public String show() {
+        StringBuilder res = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            switch (rotation[LINE_INTS * i]) {
+                case 0:
+                    for (int j = 0; j < size; j++)
+                        for (int k = 0; k < size; k++)
+                            res.append(stickers[i][j * size + k]);
+                    break;
+                case 1:
+                    for (int k = 0; k < size; k++)
+                        for (int j = size - 1; j >= 0; j--)
+                            res.append(stickers[i][j * size + k]);
+                    break;
+                case 2:
+                    for (int j = size - 1; j >= 0; j--)
+                        for (int k = size - 1; k >= 0; k--)
+                            res.append(stickers[i][j * size + k]);
+                    break;
+                case 3:
+                    for (int k = size - 1; k >= 0; k--)
+                        for (int j = 0; j < size; j++)
+                            res.append(stickers[i][j * size + k]);
+                    break;
+            }
+        }
+        return res.toString();
+    }
+
+}